@@ -25,10 +25,70 @@ public class Constants {
     public static class Fluids {
         public static final int BASE_IO = FluidType.BUCKET_VOLUME / 50;
         public static final int CAPACITY = FluidType.BUCKET_VOLUME;
+        /**
+         * Minimum number of ticks between two updates of the contents of the pipes of a combined fluid network.
+         */
+        public static final int SHARE_UPDATE_INTERVAL = 10;
+        /**
+         * Number of fill levels of a fluid pipe that clients are kept up to date with.
+         * Changes of the amount within a level are not synced until the pipe is sent again for another reason.
+         */
+        public static final int VISIBLE_FILL_LEVELS = 16;
+    }
+
+    public static class Networks {
+        /**
+         * Number of ticks without any activity after which a network becomes dormant.
+         */
+        public static final int DORMANCY_DELAY = 100;
+        /**
+         * How often dormant networks still tick, to notice changes in adjacent inventories.
+         */
+        public static final int DORMANT_POLL_INTERVAL = 20;
+        /**
+         * Number of ticks during which the demand of a transfer target, as measured by the last transfer, is trusted.
+         */
+        public static final int DEMAND_ESTIMATE_TICKS = 20;
+        /**
+         * Number of ticks during which a transfer target that did not want anything is left alone.
+         * Shorter than {@link #DEMAND_ESTIMATE_TICKS} since such a target receives nothing until it is checked again.
+         */
+        public static final int ZERO_DEMAND_ESTIMATE_TICKS = 5;
+    }
+
+    public static class Sync {
+        /**
+         * Horizontal distance in blocks within which players receive cosmetic updates (traveling items, fluid levels).
+         * Can be changed with the {@code moderndynamics.visualSyncRadius} system property.
+         */
+        public static final int VISUAL_SYNC_RADIUS = Integer.getInteger("moderndynamics.visualSyncRadius", 64);
+        /**
+         * How often players that came into range receive the current state of the pipes that changed while they were far away.
+         */
+        public static final int CATCH_UP_INTERVAL = 10;
     }
 
     public static class Items {
         public static final double SPEED_IN_PIPES = 0.02;
+        /**
+         * Compute item paths on the server thread as soon as they are needed, instead of in the background.
+         * Makes routing deterministic, which the game tests rely on.
+         */
+        public static final boolean SYNCHRONOUS_PATH_COMPUTATION = Boolean.getBoolean("moderndynamics.synchronousPathComputation");
+        /**
+         * Maximum number of pipes that are searched on the server thread to give a new source some paths to nearby targets,
+         * while its full paths are computed in the background.
+         */
+        public static final int LOCAL_PATH_SEARCH_NODES = 64;
+        /**
+         * Number of ticks after which simulated insertion targets that no item is traveling towards are forgotten.
+         */
+        public static final int INSERTION_TARGET_IDLE_TICKS = 200;
+        /**
+         * How often the items in a target with a maximum number of items are counted again.
+         * In between, the count is only updated with the items inserted by the pipes.
+         */
+        public static final int STORED_ITEMS_SCAN_INTERVAL = 20;
     }
 
     public static class Upgrades {
@@ -36,14 +36,22 @@ public abstract class MdBlockEntity extends BlockEntity {
         super(bet, pos, state);
     }
 
+    /**
+     * Sync this block entity to the clients.
+     * Updates that don't require a remesh are cosmetic: they are only sent to the players that are close enough, see {@link VisualSync}.
+     */
     // Thank you Fabric API
     public void sync(boolean shouldRemesh) {
         Preconditions.checkNotNull(level); // Maintain distinct failure case from below
         if (!(level instanceof ServerLevel serverWorld))
             throw new IllegalStateException("Cannot call sync() on the logical client! Did you check world.isClient first?");
 
-        shouldClientRemesh = shouldRemesh | shouldClientRemesh;
-        serverWorld.getChunkSource().blockChanged(getBlockPos());
+        if (shouldRemesh) {
+            shouldClientRemesh = true;
+            serverWorld.getChunkSource().blockChanged(getBlockPos());
+        } else {
+            VisualSync.markDirty(this);
+        }
     }
 
     public void sync() {
@@ -63,6 +71,18 @@ public abstract class MdBlockEntity extends BlockEntity {
         return ClientboundBlockEntityDataPacket.create(this);
     }
 
+    /**
+     * Packet with the current client state of this block entity, that does not trigger a remesh.
+     */
+    public final ClientboundBlockEntityDataPacket getVisualUpdatePacket() {
+        return ClientboundBlockEntityDataPacket.create(this, (blockEntity, registries) -> {
+            CompoundTag nbt = new CompoundTag();
+            ((MdBlockEntity) blockEntity).toClientTag(nbt, registries);
+            nbt.putBoolean("#c", false);
+            return nbt;
+        });
+    }
+
     @Override
     public final CompoundTag getUpdateTag(HolderLookup.Provider registries) {
         CompoundTag nbt = super.getUpdateTag(registries);
@@ -18,6 +18,7 @@
  */
 package dev.technici4n.moderndynamics;
 
+import dev.technici4n.moderndynamics.attachment.attached.ItemTagIndex;
 import dev.technici4n.moderndynamics.attachment.upgrade.AttachmentUpgradesLoader;
 import dev.technici4n.moderndynamics.client.ModernDynamicsClient;
 import dev.technici4n.moderndynamics.init.MdAttachments;
@@ -27,16 +28,21 @@ import dev.technici4n.moderndynamics.init.MdItems;
 import dev.technici4n.moderndynamics.init.MdMenus;
 import dev.technici4n.moderndynamics.network.NetworkManager;
 import dev.technici4n.moderndynamics.network.TickHelper;
+import dev.technici4n.moderndynamics.network.item.SimulatedExtractionSources;
 import dev.technici4n.moderndynamics.network.item.SimulatedInsertionTargets;
+import dev.technici4n.moderndynamics.network.item.sync.TravelingItemSync;
 import dev.technici4n.moderndynamics.packets.MdPackets;
 import dev.technici4n.moderndynamics.util.MdId;
 import dev.technici4n.moderndynamics.util.MdItemGroup;
 import dev.technici4n.moderndynamics.util.WrenchHelper;
 import net.minecraft.core.registries.Registries;
+import net.minecraft.server.level.ServerLevel;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.loading.FMLLoader;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.neoforged.neoforge.event.tick.ServerTickEvent;
 import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
@@ -56,10 +62,28 @@ public class ModernDynamics {
         NeoForge.EVENT_BUS.addListener(ServerStoppedEvent.class, e -> {
             NetworkManager.onServerStopped();
             SimulatedInsertionTargets.clear();
+            SimulatedExtractionSources.clear();
+            TravelingItemSync.clear();
+            VisualSync.clear();
         });
         NeoForge.EVENT_BUS.addListener(ServerTickEvent.Post.class, e -> {
             TickHelper.onEndTick();
             NetworkManager.onEndTick();
+            SimulatedInsertionTargets.onEndTick();
+            SimulatedExtractionSources.onEndTick();
+            TravelingItemSync.onEndTick();
+            VisualSync.onEndTick();
+        });
+        NeoForge.EVENT_BUS.addListener(LevelEvent.Unload.class, e -> {
+            if (e.getLevel() instanceof ServerLevel level) {
+                SimulatedInsertionTargets.onLevelUnload(level);
+            }
+        });
+        NeoForge.EVENT_BUS.addListener(TagsUpdatedEvent.class, e -> {
+            // Only the server-side tags matter, the client receiving tags must not replace the index of an integrated server.
+            if (e.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+                ItemTagIndex.rebuild();
+            }
         });
         NeoForge.EVENT_BUS.addListener(WrenchHelper::handleEvent);
         AttachmentUpgradesLoader.setup();
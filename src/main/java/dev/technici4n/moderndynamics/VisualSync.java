@@ -0,0 +1,155 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Sends cosmetic updates (traveling items, fluid levels) only to the players that are close enough to see them.
+ * Players that track the chunk but are too far away remember which block entities are outdated,
+ * and receive their current state once they come into range.
+ * Structural updates are still sent to all the players tracking the chunk through {@link MdBlockEntity#sync()}.
+ */
+public class VisualSync {
+    private static final Set<MdBlockEntity> DIRTY_BLOCK_ENTITIES = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static final Map<ServerPlayer, OutdatedBlockEntities> OUTDATED = new IdentityHashMap<>();
+    private static long tickCounter = 0;
+
+    /**
+     * Schedule a cosmetic update of a block entity at the end of the tick.
+     */
+    public static void markDirty(MdBlockEntity blockEntity) {
+        DIRTY_BLOCK_ENTITIES.add(blockEntity);
+    }
+
+    /**
+     * Send a packet to the players tracking a chunk that are in range.
+     * The packet is only built if at least one player is in range.
+     * The given positions are marked as outdated for the players that are out of range.
+     */
+    public static void sendToPlayersInRange(ServerLevel level, ChunkPos chunkPos, Supplier<? extends Packet<?>> packetFactory,
+            LongCollection positions) {
+        Packet<?> packet = null;
+        for (var player : level.getChunkSource().chunkMap.getPlayers(chunkPos, false)) {
+            if (isInRange(player, chunkPos)) {
+                if (packet == null) {
+                    packet = packetFactory.get();
+                }
+                player.connection.send(packet);
+            } else {
+                var outdated = OUTDATED.get(player);
+                if (outdated == null || outdated.level != level) {
+                    outdated = new OutdatedBlockEntities(level);
+                    OUTDATED.put(player, outdated);
+                }
+                outdated.positions.addAll(positions);
+            }
+        }
+    }
+
+    /**
+     * Check if a player is close enough to a chunk to see the cosmetic updates of its block entities.
+     * The middle of the chunk is used for both the regular and the catch-up updates,
+     * such that a player that was skipped by one is also skipped by the other.
+     */
+    private static boolean isInRange(ServerPlayer player, ChunkPos chunkPos) {
+        double dx = player.getX() - chunkPos.getMiddleBlockX();
+        double dz = player.getZ() - chunkPos.getMiddleBlockZ();
+        int radius = Constants.Sync.VISUAL_SYNC_RADIUS;
+        return dx * dx + dz * dz <= radius * radius;
+    }
+
+    /**
+     * Called at the end of the server tick.
+     */
+    public static void onEndTick() {
+        for (var blockEntity : DIRTY_BLOCK_ENTITIES) {
+            if (!blockEntity.isRemoved() && blockEntity.getLevel() instanceof ServerLevel level) {
+                var pos = blockEntity.getBlockPos();
+                sendToPlayersInRange(level, new ChunkPos(pos), blockEntity::getVisualUpdatePacket, LongSet.of(pos.asLong()));
+            }
+        }
+        DIRTY_BLOCK_ENTITIES.clear();
+
+        if (++tickCounter % Constants.Sync.CATCH_UP_INTERVAL == 0) {
+            sendCatchUpUpdates();
+        }
+    }
+
+    /**
+     * Send the current state of outdated block entities to the players that came into range.
+     */
+    private static void sendCatchUpUpdates() {
+        for (var it = OUTDATED.entrySet().iterator(); it.hasNext();) {
+            var entry = it.next();
+            var player = entry.getKey();
+            var outdated = entry.getValue();
+
+            if (player.isRemoved() || player.hasDisconnected() || player.serverLevel() != outdated.level) {
+                // The player will receive the full chunks when they come back.
+                it.remove();
+                continue;
+            }
+
+            for (var posIt = outdated.positions.iterator(); posIt.hasNext();) {
+                var pos = BlockPos.of(posIt.nextLong());
+                var chunkPos = new ChunkPos(pos);
+                if (!player.getChunkTrackingView().contains(chunkPos)) {
+                    // The chunk will be sent again if the player starts tracking it again.
+                    posIt.remove();
+                } else if (isInRange(player, chunkPos)) {
+                    if (outdated.level.getBlockEntity(pos) instanceof MdBlockEntity blockEntity) {
+                        player.connection.send(blockEntity.getVisualUpdatePacket());
+                    }
+                    posIt.remove();
+                }
+            }
+
+            if (outdated.positions.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    public static void clear() {
+        DIRTY_BLOCK_ENTITIES.clear();
+        OUTDATED.clear();
+    }
+
+    private static class OutdatedBlockEntities {
+        final ServerLevel level;
+        final LongSet positions = new LongOpenHashSet();
+
+        OutdatedBlockEntities(ServerLevel level) {
+            this.level = level;
+        }
+    }
+}
@@ -48,10 +48,14 @@ public class IoAttachmentItem extends AttachmentItem {
 
     @Override
     public AttachedAttachment createAttached(NodeHost host, CompoundTag configTag, HolderLookup.Provider registries) {
+        Runnable setChangedCallback = () -> {
+            host.getPipe().setChanged();
+            host.wakeNetwork();
+        };
         if (host instanceof ItemHost) {
-            return new ItemAttachedIo(this, configTag, host.getPipe()::setChanged, registries);
+            return new ItemAttachedIo(this, configTag, setChangedCallback, registries);
         } else {
-            return new FluidAttachedIo(this, configTag, host.getPipe()::setChanged, registries);
+            return new FluidAttachedIo(this, configTag, setChangedCallback, registries);
         }
     }
 
@@ -64,9 +68,8 @@ public class IoAttachmentItem extends AttachmentItem {
         result.add(Setting.FILTER_SIMILAR);
         switch (type) {
         case FILTER -> {
-            // TODO implement
-            // result.add(Setting.OVERSENDING_MODE);
-            // result.add(Setting.MAX_ITEMS_IN_INVENTORY);
+            result.add(Setting.OVERSENDING_MODE);
+            result.add(Setting.MAX_ITEMS_IN_INVENTORY);
         }
         case EXTRACTOR -> {
             result.add(Setting.MAX_ITEMS_EXTRACTED);
@@ -74,8 +77,7 @@ public class IoAttachmentItem extends AttachmentItem {
         }
         case ATTRACTOR -> {
             result.add(Setting.MAX_ITEMS_EXTRACTED);
-            // TODO implement
-            // result.add(Setting.MAX_ITEMS_IN_INVENTORY);
+            result.add(Setting.MAX_ITEMS_IN_INVENTORY);
             result.add(Setting.ROUTING_MODE);
         }
         }
@@ -33,7 +33,6 @@ import java.util.List;
 import java.util.Set;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.world.ContainerHelper;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
@@ -90,12 +89,12 @@ public abstract class AttachedIo extends AttachedAttachment {
     }
 
     public void setUpgrade(int slot, ItemStack upgrade) {
-        upgradeContainer.upgrades.set(slot, upgrade);
+        upgradeContainer.setUpgrade(slot, upgrade);
         onUpgradesChanged();
     }
 
     public ItemStack removeUpgrade(int slot, int count) {
-        return ContainerHelper.removeItem(upgradeContainer.upgrades, slot, count);
+        return upgradeContainer.removeUpgrade(slot, count);
     }
 
     public boolean mayPlaceUpgrade(int slot, Item upgrade) {
@@ -131,6 +130,7 @@ public abstract class AttachedIo extends AttachedAttachment {
     }
 
     public void onUpgradesChanged() {
+        upgradeContainer.invalidateStats();
         setChangedCallback.run();
         resetCachedFilter();
     }
@@ -171,13 +171,12 @@ public abstract class AttachedIo extends AttachedAttachment {
         tag.putByte(key, (byte) enumValue.ordinal());
     }
 
-    // TODO: be smart and cache this
     public boolean isEnabledViaRedstone(PipeBlockEntity pipe) {
         if (getRedstoneMode() == RedstoneMode.IGNORED) {
             return true;
         }
 
-        var signal = pipe.getLevel().hasNeighborSignal(pipe.getBlockPos());
+        var signal = pipe.hasRedstoneSignal();
         if (signal) {
             return getRedstoneMode() == RedstoneMode.REQUIRES_HIGH;
         } else {
@@ -39,6 +39,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import net.minecraft.core.Direction;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.core.NonNullList;
@@ -56,6 +57,10 @@ import net.neoforged.neoforge.items.IItemHandler;
 import org.jetbrains.annotations.Nullable;
 
 public class ItemAttachedIo extends AttachedIo {
+    /**
+     * Incremented every time the filter of any item attachment changes, to invalidate the caches that depend on filters.
+     */
+    private static final AtomicLong FILTER_VERSION = new AtomicLong();
 
     private final Map<ItemVariant, Integer> stuffedItems = new LinkedHashMap<>();
     private int roundRobinIndex;
@@ -108,8 +113,7 @@ public class ItemAttachedIo extends AttachedIo {
         } else {
             setMaxItemsExtracted(getMaxItemsExtractedMaximum());
         }
-        this.maxItemsInInventory = configData.getInt("maxItemsInInventory");
-        this.maxItemsInInventory = Mth.clamp(this.maxItemsInInventory, 0, getMaxItemsExtractedMaximum());
+        setMaxItemsInInventory(configData.getInt("maxItemsInInventory"));
 
         this.stuffedItems.clear();
         var stuffedTag = configData.getList("stuffed", CompoundTag.TAG_COMPOUND);
@@ -369,7 +373,8 @@ public class ItemAttachedIo extends AttachedIo {
                     getFilterInversion(),
                     this.filterDamage,
                     getFilterNbt(),
-                    this.filterMod);
+                    this.filterMod,
+                    this.filterSimilar);
         }
         return this.cachedFilter;
     }
@@ -377,6 +382,18 @@ public class ItemAttachedIo extends AttachedIo {
     @Override
     protected void resetCachedFilter() {
         this.cachedFilter = null;
+        onFiltersChanged();
+    }
+
+    /**
+     * Invalidate the caches that depend on filters, for example because the item tags were reloaded.
+     */
+    static void onFiltersChanged() {
+        FILTER_VERSION.incrementAndGet();
+    }
+
+    public static long getFilterVersion() {
+        return FILTER_VERSION.get();
     }
 
     public int getRoundRobinIndex(int maxValue) {
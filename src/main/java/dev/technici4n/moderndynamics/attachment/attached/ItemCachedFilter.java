@@ -22,25 +22,54 @@ import dev.technici4n.moderndynamics.attachment.settings.FilterDamageMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterInversionMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterModMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterNbtMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterSimilarMode;
 import dev.technici4n.moderndynamics.util.FluidVariant;
 import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.Object2ByteMap;
+import it.unimi.dsi.fastutil.objects.Object2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ByteMap;
+import it.unimi.dsi.fastutil.objects.Reference2ByteOpenHashMap;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.core.component.DataComponents;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.item.Item;
 import org.jetbrains.annotations.Nullable;
 
 public final class ItemCachedFilter {
+    /**
+     * Mod IDs interned to ints, and the interned mod ID of each item.
+     */
+    private static final Map<String, Integer> MOD_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_MOD_ID = new AtomicInteger();
+    private static final Map<Item, Integer> ITEM_MOD_IDS = new ConcurrentHashMap<>();
+    /**
+     * Maximum number of decisions that are remembered in each map, after which that map is cleared.
+     */
+    private static final int MAX_DECISIONS = 256;
+    private static final byte UNKNOWN = 0, MATCHES = 1, DOES_NOT_MATCH = 2;
+
     private final Set<ItemVariant> listedVariants;
     private final Set<Item> listedItems;
+    /**
+     * Item and damage of each listed variant, to respect damage while ignoring the other components.
+     */
+    private final Set<ItemDamage> listedItemDamages;
     private final FilterInversionMode filterInversion;
     private final FilterDamageMode filterDamage;
     private final FilterNbtMode filterNbt;
     private final FilterModMode filterMod;
+    private final FilterSimilarMode filterSimilar;
 
     /**
      * Lists mod IDs in case mod-id based filtering is enabled.
@@ -48,25 +77,48 @@ public final class ItemCachedFilter {
      * It is always null otherwise.
      */
     @Nullable
-    private Set<String> listedMods;
+    private IntSet listedMods;
+    /**
+     * Union of the tags of the listed items, in case similar items are included.
+     * Recomputed when the tags are reloaded, see {@link #tagIndex}.
+     */
+    @Nullable
+    private BitSet similarTags;
+    @Nullable
+    private ItemTagIndex tagIndex;
+    /**
+     * Result of {@link #matchesItem} for the variants that were checked recently.
+     * Variants without components are unique instances, so identity is enough to find them again.
+     */
+    private final Reference2ByteMap<ItemVariant> decisions = new Reference2ByteOpenHashMap<>();
+    /**
+     * Same as {@link #decisions} for the variants with components, which are a new instance for every stack.
+     * They are compared with equals, and kept apart so that they never push out the decisions for the common variants.
+     */
+    private final Object2ByteMap<ItemVariant> componentDecisions = new Object2ByteOpenHashMap<>();
 
     public ItemCachedFilter(List<ItemVariant> filterConfig,
             FilterInversionMode filterInversion,
             FilterDamageMode filterDamage,
             FilterNbtMode filterNbt,
-            FilterModMode filterMod) {
+            FilterModMode filterMod,
+            FilterSimilarMode filterSimilar) {
         this.filterInversion = filterInversion;
         this.filterDamage = filterDamage;
         this.filterNbt = filterNbt;
         this.filterMod = filterMod;
+        this.filterSimilar = filterSimilar;
 
         // Dedupe and drop blanks
         this.listedVariants = new HashSet<>(filterConfig.size());
         this.listedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.listedItemDamages = new HashSet<>();
         for (var variant : filterConfig) {
             if (!variant.isBlank()) {
-                this.listedVariants.add(variant);
+                // When damage is ignored, listed variants are keyed without their damage
+                this.listedVariants.add(filterDamage == FilterDamageMode.IGNORE_DAMAGE ? stripDamage(variant) : variant);
                 this.listedItems.add(variant.getItem());
+                this.listedItemDamages.add(new ItemDamage(variant.getItem(), getDamage(variant)));
             }
         }
     }
@@ -82,29 +134,59 @@ public final class ItemCachedFilter {
             }
         } else {
             if (filterNbt == FilterNbtMode.RESPECT_NBT) {
-                itemIsListed = listedVariants.contains(variant);
+                if (filterDamage == FilterDamageMode.IGNORE_DAMAGE) {
+                    itemIsListed = listedVariants.contains(stripDamage(variant));
+                } else {
+                    itemIsListed = listedVariants.contains(variant);
+                }
             } else {
-                itemIsListed = listedItems.contains(variant.getItem());
+                if (filterDamage == FilterDamageMode.RESPECT_DAMAGE) {
+                    itemIsListed = listedItemDamages.contains(new ItemDamage(variant.getItem(), getDamage(variant)));
+                } else {
+                    itemIsListed = listedItems.contains(variant.getItem());
+                }
             }
-
-            // Possibly handle matching damage too
         }
 
-        // The "ore dictionary" search could treat an otherwise unlisted item as listed based on its tags
-        if (!itemIsListed) {
-
+        // The "ore dictionary" search treats an otherwise unlisted item as listed if it shares a tag with a listed item
+        if (!itemIsListed && filterSimilar == FilterSimilarMode.INCLUDE_SIMILAR) {
+            itemIsListed = similarTags.intersects(tagIndex.getTags(variant.getItem()));
         }
 
         return itemIsListed;
     }
 
     public boolean matchesItem(ItemVariant variant) {
-        return isItemListed(variant) == (filterInversion == FilterInversionMode.WHITELIST);
+        if (filterSimilar == FilterSimilarMode.INCLUDE_SIMILAR && tagIndex != ItemTagIndex.get()) {
+            // Tags were reloaded: recompute the tags of the listed items, and forget decisions that relied on the old tags
+            updateSimilarTags();
+            decisions.clear();
+            componentDecisions.clear();
+        }
+
+        // The decision is only computed once per variant, so the damage of a variant is not stripped again on every check
+        boolean hasComponents = !variant.getComponentsPatch().isEmpty();
+        byte decision = hasComponents ? componentDecisions.getByte(variant) : decisions.getByte(variant);
+        if (decision == UNKNOWN) {
+            decision = isItemListed(variant) == (filterInversion == FilterInversionMode.WHITELIST) ? MATCHES : DOES_NOT_MATCH;
+            if (hasComponents) {
+                if (componentDecisions.size() >= MAX_DECISIONS) {
+                    componentDecisions.clear();
+                }
+                componentDecisions.put(variant, decision);
+            } else {
+                if (decisions.size() >= MAX_DECISIONS) {
+                    decisions.clear();
+                }
+                decisions.put(variant, decision);
+            }
+        }
+        return decision == MATCHES;
     }
 
-    private Set<String> getListedMods() {
+    private IntSet getListedMods() {
         if (listedMods == null) {
-            listedMods = new HashSet<>();
+            listedMods = new IntOpenHashSet();
             for (var variant : listedVariants) {
                 listedMods.add(getModId(variant));
             }
@@ -113,13 +195,42 @@ public final class ItemCachedFilter {
         return listedMods;
     }
 
+    private void updateSimilarTags() {
+        tagIndex = ItemTagIndex.get();
+        similarTags = new BitSet();
+        for (var item : listedItems) {
+            similarTags.or(tagIndex.getTags(item));
+        }
+    }
+
+    /**
+     * Return the variant without its damage, to compare variants regardless of damage.
+     */
+    private static ItemVariant stripDamage(ItemVariant variant) {
+        if (variant.getComponentsPatch().get(DataComponents.DAMAGE) == null) {
+            return variant;
+        }
+        var stack = variant.toStack();
+        // Resetting the damage to the default value removes it from the patch
+        stack.setDamageValue(0);
+        return ItemVariant.of(stack);
+    }
+
+    private static int getDamage(ItemVariant variant) {
+        var damage = variant.getComponentsPatch().get(DataComponents.DAMAGE);
+        return damage != null && damage.isPresent() ? damage.get() : 0;
+    }
+
     public boolean matchesFluid(FluidVariant variant) {
         return false;
     }
 
-    private static String getModId(ItemVariant variant) {
-        // This returns "minecraft" if the item is unregistered
-        return BuiltInRegistries.ITEM.getKey(variant.getItem()).getNamespace();
+    private static int getModId(ItemVariant variant) {
+        return ITEM_MOD_IDS.computeIfAbsent(variant.getItem(), item -> {
+            // This returns "minecraft" if the item is unregistered
+            var modId = BuiltInRegistries.ITEM.getKey(item).getNamespace();
+            return MOD_IDS.computeIfAbsent(modId, m -> NEXT_MOD_ID.getAndIncrement());
+        });
     }
 
     private static String getModId(FluidVariant variant) {
@@ -127,6 +238,9 @@ public final class ItemCachedFilter {
         return BuiltInRegistries.FLUID.getKey(variant.getFluid()).getNamespace();
     }
 
+    private record ItemDamage(Item item, int damage) {
+    }
+
     @FunctionalInterface
     interface NbtMatcher {
         boolean matches(@Nullable CompoundTag a, @Nullable CompoundTag b);
@@ -0,0 +1,71 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.attachment.attached;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import java.util.BitSet;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+
+/**
+ * Immutable index of the tags of every item, as one bit set per item.
+ * Built once per tag reload, such that checking whether two items share a tag is a bit set intersection.
+ */
+public final class ItemTagIndex {
+    private static final BitSet NO_TAGS = new BitSet();
+    private static volatile ItemTagIndex current = new ItemTagIndex(new Reference2ObjectOpenHashMap<>());
+
+    private final Reference2ObjectMap<Item, BitSet> itemTags;
+
+    private ItemTagIndex(Reference2ObjectMap<Item, BitSet> itemTags) {
+        this.itemTags = itemTags;
+    }
+
+    /**
+     * Rebuild the index from the tags currently bound to the item registry.
+     */
+    public static void rebuild() {
+        Reference2ObjectMap<Item, BitSet> itemTags = new Reference2ObjectOpenHashMap<>();
+        int tagIndex = 0;
+        for (var tag : BuiltInRegistries.ITEM.getTags().toList()) {
+            for (var holder : tag.getSecond()) {
+                itemTags.computeIfAbsent(holder.value(), item -> new BitSet()).set(tagIndex);
+            }
+            tagIndex++;
+        }
+        current = new ItemTagIndex(itemTags);
+        // Cached filter decisions of similar filters depend on the tags.
+        ItemAttachedIo.onFiltersChanged();
+    }
+
+    /**
+     * Return the current index. A different instance is returned after each tag reload.
+     */
+    static ItemTagIndex get() {
+        return current;
+    }
+
+    /**
+     * Return the tags of an item. The returned bit set must not be modified.
+     */
+    BitSet getTags(Item item) {
+        return itemTags.getOrDefault(item, NO_TAGS);
+    }
+}
@@ -29,18 +29,42 @@ import net.minecraft.util.Mth;
 import net.minecraft.world.ContainerHelper;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.Nullable;
 
 class UpgradeContainer {
     final NonNullList<ItemStack> upgrades = NonNullList.withSize(AttachedIo.UPGRADE_SLOTS, ItemStack.EMPTY);
+    /**
+     * Aggregated stats of the upgrades, recomputed after the upgrades change or the upgrade types are reloaded.
+     */
+    @Nullable
+    private Stats stats;
 
     public void readNbt(CompoundTag tag, HolderLookup.Provider registries) {
         ContainerHelper.loadAllItems(tag, upgrades, registries);
+        invalidateStats();
     }
 
     public void writeNbt(CompoundTag tag, HolderLookup.Provider registries) {
         ContainerHelper.saveAllItems(tag, upgrades, registries);
     }
 
+    public void setUpgrade(int slot, ItemStack upgrade) {
+        upgrades.set(slot, upgrade);
+        invalidateStats();
+    }
+
+    public ItemStack removeUpgrade(int slot, int count) {
+        invalidateStats();
+        return ContainerHelper.removeItem(upgrades, slot, count);
+    }
+
+    /**
+     * Must be called after the upgrade stacks were modified in place.
+     */
+    public void invalidateStats() {
+        stats = null;
+    }
+
     public boolean mayPlaceUpgrade(int slot, Item upgrade) {
         for (int i = 0; i < AttachedIo.UPGRADE_SLOTS; ++i) {
             if (i != slot && upgrades.get(i).is(upgrade)) {
@@ -52,6 +76,14 @@ class UpgradeContainer {
         return LoadedUpgrades.getType(upgrade).getSlotLimit() > 0;
     }
 
+    private Stats getStats() {
+        var loadedUpgrades = LoadedUpgrades.get();
+        if (stats == null || stats.loadedUpgrades != loadedUpgrades) {
+            stats = computeStats(loadedUpgrades);
+        }
+        return stats;
+    }
+
     private int reduce(ToIntFunction<UpgradeType> valueExtractor) {
         int tot = 0;
         for (var stack : upgrades) {
@@ -60,34 +92,56 @@ class UpgradeContainer {
         return tot;
     }
 
+    private Stats computeStats(LoadedUpgrades loadedUpgrades) {
+        int filterSize = Mth.clamp(3 + reduce(UpgradeType::getAddFilterSlots), 0, Constants.Upgrades.MAX_FILTER);
+        int itemsPerOperation = Mth.clamp(4 + reduce(UpgradeType::getAddItemCount), 1, Integer.MAX_VALUE);
+        double itemSpeedupFactor = Mth.clamp(1 + reduce(UpgradeType::getAddItemSpeed), 0.25, 20);
+        int itemOperationTickDelay = Mth.clamp(40 / (1 + reduce(UpgradeType::getAddItemTransferFrequency)), 1, 200);
+
+        int totalAdd = 1 + reduce(UpgradeType::getAddFluidTransfer);
+        int totalMultiply = 1 + reduce(UpgradeType::getMultiplyFluidTransfer);
+        int fluidMaxIo = Mth.clamp(totalAdd * totalMultiply, 1, 1_000_000) * Constants.Fluids.BASE_IO;
+
+        boolean advancedBehaviorAllowed = false;
+        for (var stack : upgrades) {
+            if (LoadedUpgrades.getType(stack.getItem()).isEnableAdvancedBehavior()) {
+                advancedBehaviorAllowed = true;
+                break;
+            }
+        }
+
+        return new Stats(loadedUpgrades, filterSize, itemsPerOperation, itemSpeedupFactor, itemOperationTickDelay, fluidMaxIo,
+                advancedBehaviorAllowed);
+    }
+
     public int getFilterSize() {
-        return Mth.clamp(3 + reduce(UpgradeType::getAddFilterSlots), 0, Constants.Upgrades.MAX_FILTER);
+        return getStats().filterSize;
     }
 
     public int getItemsPerOperation() {
-        return Mth.clamp(4 + reduce(UpgradeType::getAddItemCount), 1, Integer.MAX_VALUE);
+        return getStats().itemsPerOperation;
     }
 
     public double getItemSpeedupFactor() {
-        return Mth.clamp(1 + reduce(UpgradeType::getAddItemSpeed), 0.25, 20);
+        return getStats().itemSpeedupFactor;
     }
 
     public int getItemOperationTickDelay() {
-        return Mth.clamp(40 / (1 + reduce(UpgradeType::getAddItemTransferFrequency)), 1, 200);
+        return getStats().itemOperationTickDelay;
     }
 
     public int getFluidMaxIo() {
-        int totalAdd = 1 + reduce(UpgradeType::getAddFluidTransfer);
-        int totalMultiply = 1 + reduce(UpgradeType::getMultiplyFluidTransfer);
-        return Mth.clamp(totalAdd * totalMultiply, 1, 1_000_000) * Constants.Fluids.BASE_IO;
+        return getStats().fluidMaxIo;
     }
 
     public boolean isAdvancedBehaviorAllowed() {
-        for (var stack : upgrades) {
-            if (LoadedUpgrades.getType(stack.getItem()).isEnableAdvancedBehavior()) {
-                return true;
-            }
-        }
-        return false;
+        return getStats().advancedBehaviorAllowed;
+    }
+
+    /**
+     * @param loadedUpgrades The upgrade types that the stats were computed with.
+     */
+    private record Stats(LoadedUpgrades loadedUpgrades, int filterSize, int itemsPerOperation, double itemSpeedupFactor,
+            int itemOperationTickDelay, int fluidMaxIo, boolean advancedBehaviorAllowed) {
     }
 }
@@ -186,8 +186,7 @@ public class AttachedIoMenu<A extends AttachedIo> extends AbstractContainerMenu
             MdPackets.sendSetFilterMode(containerId, value);
         }
         attachment.setFilterInversion(value);
-        // TODO: clear all these pipe.setChanged() calls and use the setChangedCallback in the attachment instead.
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public RedstoneMode getRedstoneMode() {
@@ -199,7 +198,18 @@ public class AttachedIoMenu<A extends AttachedIo> extends AbstractContainerMenu
             MdPackets.sendSetRedstoneMode(containerId, redstoneMode);
         }
         attachment.setRedstoneMode(redstoneMode);
+        onConfigChanged();
+    }
+
+    /**
+     * Save the pipe after a configuration change, and schedule an update of its hosts so the change applies immediately.
+     */
+    protected final void onConfigChanged() {
+        // TODO: clear all these onConfigChanged() calls and use the setChangedCallback in the attachment instead.
         pipe.setChanged();
+        if (!isClientSide()) {
+            pipe.scheduleHostUpdates();
+        }
     }
 
     public boolean isSettingSupported(Setting setting) {
@@ -97,7 +97,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetFilterDamage(containerId, value);
         }
         attachment.setFilterDamage(value);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public FilterNbtMode getFilterNbt() {
@@ -109,7 +109,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetFilterNbt(containerId, value);
         }
         attachment.setFilterNbt(value);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public FilterModMode getFilterMod() {
@@ -121,7 +121,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetFilterMod(containerId, value);
         }
         attachment.setFilterMod(value);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public FilterSimilarMode getFilterSimilar() {
@@ -133,7 +133,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetFilterSimilar(containerId, value);
         }
         attachment.setFilterSimilar(value);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public RoutingMode getRoutingMode() {
@@ -145,7 +145,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetRoutingMode(containerId, routingMode);
         }
         attachment.setRoutingMode(routingMode);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public OversendingMode getOversendingMode() {
@@ -157,7 +157,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
             MdPackets.sendSetOversendingMode(containerId, oversendingMode);
         }
         attachment.setOversendingMode(oversendingMode);
-        pipe.setChanged();
+        onConfigChanged();
     }
 
     public int getMaxItemsInInventory() {
@@ -166,7 +166,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
 
     public void setMaxItemsInInventory(int value, boolean sendPacket) {
         attachment.setMaxItemsInInventory(value);
-        pipe.setChanged();
+        onConfigChanged();
         if (isClientSide() && sendPacket) {
             MdPackets.sendSetMaxItemsInInventory(containerId, getMaxItemsInInventory());
         }
@@ -178,7 +178,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
 
     public void setMaxItemsExtracted(int value, boolean sendPacket) {
         attachment.setMaxItemsExtracted(value);
-        pipe.setChanged();
+        onConfigChanged();
         if (isClientSide() && sendPacket) {
             MdPackets.sendSetMaxItemsExtracted(containerId, getMaxItemsExtracted());
         }
@@ -27,4 +27,25 @@ public class Network<H extends NodeHost, C extends NetworkCache<H, C>> {
     public Network(List<NetworkNode<H, C>> nodes) {
         this.nodes = nodes;
     }
+
+    void add(NetworkNode<H, C> node) {
+        node.network = this;
+        node.networkIndex = nodes.size();
+        nodes.add(node);
+    }
+
+    /**
+     * Remove a node in constant time, by moving the last node of the list in its place.
+     */
+    void remove(NetworkNode<H, C> node) {
+        if (nodes.get(node.networkIndex) != node) {
+            throw new IllegalStateException("Node is not part of this network.");
+        }
+
+        var last = nodes.remove(nodes.size() - 1);
+        if (last != node) {
+            last.networkIndex = node.networkIndex;
+            nodes.set(node.networkIndex, last);
+        }
+    }
 }
@@ -18,6 +18,7 @@
  */
 package dev.technici4n.moderndynamics.network;
 
+import dev.technici4n.moderndynamics.Constants;
 import java.util.*;
 import net.minecraft.CrashReport;
 import net.minecraft.ReportedException;
@@ -38,6 +39,13 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
      */
     private boolean combined = false;
     private final Set<NodeHost> hostsToUpdate = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Number of ticks since the last time something happened in this network.
+     * After {@link Constants.Networks#DORMANCY_DELAY} idle ticks, the network becomes dormant:
+     * it only ticks every {@link Constants.Networks#DORMANT_POLL_INTERVAL} ticks
+     * and when {@link #getNextScheduledTick scheduled work} is due, until {@link #wakeUp} is called.
+     */
+    private int idleTicks = 0;
 
     protected NetworkCache(ServerLevel level, List<NetworkNode<H, C>> nodes) {
         this.level = level;
@@ -53,6 +61,7 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
     /**
      * Called at the end of the server tick.
      * Make sure to only take hosts {@link NodeHost#isTicking() that are ticking} into account.
+     * Implementations must call {@link #wakeUp} when they did something, otherwise the network will become dormant.
      */
     protected abstract void doTick();
 
@@ -64,9 +73,20 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
             if (host.isTicking() && host.needsUpdate()) {
                 host.update();
                 it.remove();
+                wakeUp();
             }
         }
 
+        // Dormant networks still tick from time to time,
+        // because adjacent inventories can change without notifying us.
+        // They also tick when their scheduled work is due, such that it is not delayed by dormancy.
+        boolean shouldTick = !isDormant() || idleTicks % Constants.Networks.DORMANT_POLL_INTERVAL == 0
+                || getNextScheduledTick() <= TickHelper.getTickCounter();
+        idleTicks++;
+        if (!shouldTick) {
+            return;
+        }
+
         // Actually tick.
         try {
             doTick();
@@ -86,8 +106,98 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
         }
     }
 
+    /**
+     * Return the tick at which some work that was scheduled by this network is due,
+     * or {@link Long#MAX_VALUE} if nothing is scheduled.
+     * Dormant networks are ticked at that tick, even if they would otherwise sleep.
+     */
+    protected long getNextScheduledTick() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Called after a node joined this network.
+     */
+    final void onNodeAdded(NetworkNode<H, C> node) {
+        if (node.getHost().needsUpdate()) {
+            hostsToUpdate.add(node.getHost());
+        }
+        if (combined) {
+            doAddNode(node);
+        }
+        wakeUp();
+        onTopologyChanged();
+        onNodesAdded(List.of(node));
+    }
+
+    /**
+     * Called right before a node leaves this network. It is still part of {@link #nodes} at this point.
+     */
+    final void onNodeRemoved(NetworkNode<H, C> node) {
+        hostsToUpdate.remove(node.getHost());
+        if (combined) {
+            doRemoveNode(node);
+        }
+        wakeUp();
+        onTopologyChanged();
+    }
+
+    /**
+     * Called after all the nodes of another network were moved to this network.
+     * The other cache still references its former nodes, but it is discarded afterwards.
+     */
+    final void absorb(C other) {
+        NetworkCache<H, C> otherCache = other;
+        hostsToUpdate.addAll(otherCache.hostsToUpdate);
+
+        if (combined) {
+            if (otherCache.combined) {
+                doMerge(other);
+            } else {
+                for (NetworkNode<H, C> node : otherCache.nodes) {
+                    doAddNode(node);
+                }
+            }
+        } else {
+            // Write the combined contents of the other network back to its former nodes.
+            otherCache.separate();
+        }
+        wakeUp();
+        onTopologyChanged();
+        onNodesAdded(otherCache.nodes);
+    }
+
+    /**
+     * Called after some nodes of this network were moved to the new network of another cache.
+     */
+    final void splitInto(C other) {
+        NetworkCache<H, C> otherCache = other;
+        for (NetworkNode<H, C> node : otherCache.nodes) {
+            hostsToUpdate.remove(node.getHost());
+        }
+
+        if (combined) {
+            otherCache.combined = true;
+            doSplit(other);
+        }
+        wakeUp();
+        onTopologyChanged();
+    }
+
     public final void scheduleHostUpdate(NodeHost host) {
         hostsToUpdate.add(host);
+        wakeUp();
+    }
+
+    /**
+     * Mark that something happened in this network, and exit dormant mode if necessary.
+     */
+    public final void wakeUp() {
+        idleTicks = 0;
+    }
+
+    public final boolean isDormant() {
+        return idleTicks >= Constants.Networks.DORMANCY_DELAY;
     }
 
     protected void doCombine() {
@@ -96,6 +206,78 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
     protected void doSeparate() {
     }
 
+    /**
+     * Add the contents of a node that just joined to the combined state.
+     * Caches that have a combined state must override this, as well as {@link #doRemoveNode}, {@link #doMerge} and {@link #doSplit}.
+     */
+    protected void doAddNode(NetworkNode<H, C> node) {
+    }
+
+    /**
+     * Give its share of the combined state to a node that is about to leave.
+     */
+    protected void doRemoveNode(NetworkNode<H, C> node) {
+    }
+
+    /**
+     * Add the combined state of another combined cache to this one.
+     */
+    protected void doMerge(C other) {
+    }
+
+    /**
+     * Move the share of the combined state that belongs to the nodes of the other cache to it.
+     * The other cache is marked as combined, but its combined state must be initialized here.
+     */
+    protected void doSplit(C other) {
+    }
+
+    /**
+     * Called when nodes join or leave this network.
+     */
+    protected void onTopologyChanged() {
+    }
+
+    /**
+     * Called after nodes joined this network, right after {@link #onTopologyChanged}.
+     * Nodes that leave the network are not reported, caches that track nodes must check if they are still part of the network.
+     */
+    protected void onNodesAdded(List<NetworkNode<H, C>> addedNodes) {
+    }
+
+    /**
+     * Check if a node is still part of this network.
+     */
+    protected final boolean containsNode(NetworkNode<H, C> node) {
+        int index = node.getNetworkIndex();
+        return index < nodes.size() && nodes.get(index) == node;
+    }
+
+    /**
+     * Give its current share of the combined state to the host of a node, without separating the network.
+     * Used to save a host while its network stays combined.
+     */
+    public final void updateNodeShare(NetworkNode<H, C> node) {
+        if (combined) {
+            doUpdateNodeShare(node);
+        }
+    }
+
+    /**
+     * Write the share of the combined state that belongs to a node to its host, leaving the combined state untouched.
+     * The shares of all the nodes must add up to the combined state.
+     */
+    protected void doUpdateNodeShare(NetworkNode<H, C> node) {
+    }
+
+    /**
+     * Return the share of a total that belongs to a node when the total is split evenly among the nodes.
+     */
+    protected final long getEvenShare(long total, NetworkNode<H, C> node) {
+        int nodeCount = nodes.size();
+        return total / nodeCount + (node.getNetworkIndex() < total % nodeCount ? 1 : 0);
+    }
+
     public final void combine() {
         if (!combined) {
             combined = true;
@@ -113,6 +295,7 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
     public void appendDebugInfo(StringBuilder out) {
         out.append("==== Cache: ").append(getClass().getSimpleName()).append(" ====\n");
         out.append("Combined = ").append(combined).append('\n');
+        out.append("Dormant = ").append(isDormant()).append(" (idle for ").append(idleTicks).append(" ticks)\n");
         out.append("Number of nodes = ").append(nodes.size()).append('\n');
     }
 
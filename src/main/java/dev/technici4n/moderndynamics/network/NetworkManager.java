@@ -43,7 +43,8 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
     public static synchronized void onServerStopped() {
         for (NetworkManager<?, ?> manager : MANAGERS.values()) {
             manager.nodes.clear();
-            manager.pendingUpdates.clear();
+            manager.pendingAdditions.clear();
+            manager.pendingSplitChecks.clear();
             manager.networks.clear();
         }
     }
@@ -68,7 +69,14 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
     private final Class<C> cacheClass;
     private final NetworkCache.Factory<H, C> cacheFactory;
     private final IdentityHashMap<ServerLevel, Long2ObjectOpenHashMap<NetworkNode<H, C>>> nodes = new IdentityHashMap<>();
-    private final Set<NetworkNode<H, C>> pendingUpdates = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Nodes that were added but did not join a network yet.
+     */
+    private final Set<NetworkNode<H, C>> pendingAdditions = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Remaining neighbors of removed nodes. If they end up disconnected from each other, their network needs to be split.
+     */
+    private final Set<NetworkNode<H, C>> pendingSplitChecks = Collections.newSetFromMap(new IdentityHashMap<>());
     private final Set<Network<H, C>> networks = Collections.newSetFromMap(new IdentityHashMap<>());
     private boolean iteratingOverNetworks = false;
 
@@ -91,7 +99,7 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
             throw new IllegalArgumentException("Node at position " + pos + " in world " + world + " already exists.");
         }
 
-        pendingUpdates.add(newNode);
+        pendingAdditions.add(newNode);
 
         for (Direction direction : Direction.values()) {
             BlockPos adjacentPos = pos.relative(direction);
@@ -101,11 +109,6 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
             if (adjacentNode != null) {
                 if (host.canConnectTo(direction, adjacentNode.getHost())
                         && adjacentNode.getHost().canConnectTo(direction.getOpposite(), host)) {
-                    if (adjacentNode.network != null) {
-                        // The network of the adjacent node may be null during loading.
-                        adjacentNode.network.cache.separate();
-                    }
-
                     newNode.addConnection(direction, adjacentNode);
                     adjacentNode.addConnection(direction.getOpposite(), newNode);
                     adjacentNode.updateHostConnections();
@@ -137,19 +140,31 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
             throw new IllegalArgumentException("Node at position " + pos + " in world " + world + " can't be removed: the hosts don't match.");
         }
 
-        if (node.network != null) {
+        pendingAdditions.remove(node);
+        pendingSplitChecks.remove(node);
+
+        @Nullable
+        Network<H, C> network = node.network;
+        if (network != null) {
             // The network might be null, for example if the node gets instantly removed.
-            node.network.cache.separate();
-            networks.remove(node.network);
-        }
+            // The node takes its share of the network contents with it.
+            network.cache.onNodeRemoved(node);
+            network.remove(node);
+            node.network = null;
 
-        pendingUpdates.remove(node);
+            if (network.nodes.isEmpty()) {
+                networks.remove(network);
+            }
+        }
 
         for (NetworkNode.Connection<H, C> connection : node.getConnections()) {
             NetworkNode<H, C> target = connection.target();
             target.removeConnection(connection.direction().getOpposite(), node);
             target.updateHostConnections();
-            pendingUpdates.add(target);
+
+            if (network != null && target.network == network) {
+                pendingSplitChecks.add(target);
+            }
         }
     }
 
@@ -165,42 +180,205 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
         return nodes.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>()).get(pos.asLong());
     }
 
+    /**
+     * Incrementally update the networks:
+     * added nodes merge adjacent networks, and networks that lost nodes are split if they became disconnected.
+     * The existing caches are kept, and only told about the nodes that join or leave them.
+     */
     private void updateNetworks() {
-        if (pendingUpdates.size() == 0)
+        if (!pendingAdditions.isEmpty()) {
+            List<NetworkNode<H, C>> additions = new ArrayList<>(pendingAdditions);
+            pendingAdditions.clear();
+
+            for (NetworkNode<H, C> node : additions) {
+                joinNetwork(node);
+            }
+        }
+
+        if (!pendingSplitChecks.isEmpty()) {
+            // Group the checks by network, additions might have merged some networks in the meantime.
+            Map<Network<H, C>, List<NetworkNode<H, C>>> seedsByNetwork = new IdentityHashMap<>();
+            for (NetworkNode<H, C> seed : pendingSplitChecks) {
+                if (seed.network != null) {
+                    seedsByNetwork.computeIfAbsent(seed.network, n -> new ArrayList<>()).add(seed);
+                }
+            }
+            pendingSplitChecks.clear();
+
+            for (var entry : seedsByNetwork.entrySet()) {
+                // A single remaining neighbor can't be disconnected from anything.
+                if (entry.getValue().size() > 1) {
+                    splitIfDisconnected(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a node to the largest adjacent network, merging the other adjacent networks into it.
+     */
+    private void joinNetwork(NetworkNode<H, C> node) {
+        @Nullable
+        Network<H, C> largest = null;
+        for (NetworkNode.Connection<H, C> connection : node.getConnections()) {
+            @Nullable
+            Network<H, C> adjacent = connection.target().network;
+            if (adjacent != null && (largest == null || adjacent.nodes.size() > largest.nodes.size())) {
+                largest = adjacent;
+            }
+        }
+
+        if (largest == null) {
+            // Adjacent nodes that are still pending will join this network when they are processed.
+            Network<H, C> network = new Network<>(new ArrayList<>());
+            network.add(node);
+            network.cache = cacheFactory.build((ServerLevel) node.getHost().pipe.getLevel(), network.nodes);
+            networks.add(network);
             return;
+        }
 
-        List<NetworkNode<H, C>> pendingUpdatesCopy = new ArrayList<>(pendingUpdates);
-        pendingUpdates.clear();
-
-        // pendingUpdates is now used as a visited flag while we rebuild the networks
-        for (NetworkNode<H, C> node : pendingUpdatesCopy) {
-            if (!pendingUpdates.contains(node)) {
-                List<NetworkNode<H, C>> nodes = new ArrayList<>();
-                Network<H, C> network = new Network<>(nodes);
-                assignNetworkDfs(node, network);
-                network.cache = cacheFactory.build((ServerLevel) node.getHost().pipe.getLevel(), network.nodes);
-                networks.add(network);
+        largest.add(node);
+        largest.cache.onNodeAdded(node);
+
+        for (NetworkNode.Connection<H, C> connection : node.getConnections()) {
+            @Nullable
+            Network<H, C> adjacent = connection.target().network;
+            if (adjacent != null && adjacent != largest) {
+                merge(largest, adjacent);
             }
         }
+    }
 
-        // clear the visited flag
-        pendingUpdates.clear();
+    /**
+     * Merge a network into another one. Always merge the smaller network into the larger one.
+     */
+    private void merge(Network<H, C> into, Network<H, C> from) {
+        for (NetworkNode<H, C> node : from.nodes) {
+            into.add(node);
+        }
+
+        into.cache.absorb(from.cache);
+        networks.remove(from);
+    }
+
+    /**
+     * Check if the seeds of a network are still connected, and split the network if they are not.
+     *
+     * <p>
+     * One breadth-first search is started from each seed, and all searches are advanced in lockstep.
+     * When two searches meet, they are merged (using union-find on the searches).
+     * A search that runs out of nodes has found a complete component.
+     * We can stop as soon as a single search is left: its component is the rest of the network.
+     * This means that only the components that are split off are fully explored,
+     * and they tend to be the small ones.
+     */
+    private void splitIfDisconnected(Network<H, C> network, List<NetworkNode<H, C>> seeds) {
+        Map<NetworkNode<H, C>, ComponentSearch<H, C>> owners = new IdentityHashMap<>();
+        List<ComponentSearch<H, C>> searches = new ArrayList<>();
+
+        for (NetworkNode<H, C> seed : seeds) {
+            if (!owners.containsKey(seed)) {
+                var search = new ComponentSearch<>(seed);
+                owners.put(seed, search);
+                searches.add(search);
+            }
+        }
+
+        int activeSearches = searches.size();
+        while (activeSearches > 1) {
+            for (ComponentSearch<H, C> search : searches) {
+                if (activeSearches <= 1) {
+                    break;
+                }
+                if (search.parent != search || search.finished) {
+                    continue;
+                }
+
+                @Nullable
+                NetworkNode<H, C> current = search.queue.poll();
+                if (current == null) {
+                    search.finished = true;
+                    activeSearches--;
+                    continue;
+                }
+
+                for (NetworkNode.Connection<H, C> connection : current.getConnections()) {
+                    var self = search.find();
+                    var owner = owners.get(connection.target());
+
+                    if (owner == null) {
+                        owners.put(connection.target(), self);
+                        self.visit(connection.target());
+                    } else {
+                        var other = owner.find();
+                        if (other != self) {
+                            ComponentSearch.union(self, other);
+                            activeSearches--;
+                        }
+                    }
+                }
+            }
+        }
+
+        // The search that is still active keeps the existing network, the finished ones are split off.
+        for (ComponentSearch<H, C> search : searches) {
+            if (search.parent == search && search.finished) {
+                splitOff(network, search.visited);
+            }
+        }
     }
 
-    private void assignNetworkDfs(NetworkNode<H, C> u, Network<H, C> network) {
-        if (pendingUpdates.add(u)) {
-            // Remove previous network
-            if (u.network != null)
-                networks.remove(u.network);
+    /**
+     * Move some nodes of a network to a new network.
+     */
+    private void splitOff(Network<H, C> network, List<NetworkNode<H, C>> splitNodes) {
+        for (NetworkNode<H, C> node : splitNodes) {
+            network.remove(node);
+        }
+
+        Network<H, C> newNetwork = new Network<>(new ArrayList<>(splitNodes.size()));
+        for (NetworkNode<H, C> node : splitNodes) {
+            newNetwork.add(node);
+        }
+        newNetwork.cache = cacheFactory.build(network.cache.level, newNetwork.nodes);
+        network.cache.splitInto(newNetwork.cache);
+        networks.add(newNetwork);
+    }
 
-            // Link node to new network
-            u.network = network;
-            network.nodes.add(u);
+    private static class ComponentSearch<H extends NodeHost, C extends NetworkCache<H, C>> {
+        ComponentSearch<H, C> parent = this;
+        final ArrayDeque<NetworkNode<H, C>> queue = new ArrayDeque<>();
+        final List<NetworkNode<H, C>> visited = new ArrayList<>();
+        boolean finished = false;
 
-            // Visit neighbors
-            for (NetworkNode.Connection<H, C> connection : u.getConnections()) {
-                assignNetworkDfs(connection.target(), network);
+        ComponentSearch(NetworkNode<H, C> seed) {
+            visit(seed);
+        }
+
+        void visit(NetworkNode<H, C> node) {
+            queue.add(node);
+            visited.add(node);
+        }
+
+        ComponentSearch<H, C> find() {
+            if (parent != this) {
+                parent = parent.find();
             }
+            return parent;
+        }
+
+        static <H extends NodeHost, C extends NetworkCache<H, C>> void union(ComponentSearch<H, C> a, ComponentSearch<H, C> b) {
+            if (a.visited.size() < b.visited.size()) {
+                var tmp = a;
+                a = b;
+                b = tmp;
+            }
+
+            a.visited.addAll(b.visited);
+            a.queue.addAll(b.queue);
+            b.visited.clear();
+            b.queue.clear();
+            b.parent = a;
         }
     }
 }
@@ -27,6 +27,10 @@ import net.minecraft.core.Direction;
 public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
     private final H host;
     Network<H, C> network;
+    /**
+     * Index of this node in the node list of its network, used for constant time removal.
+     */
+    int networkIndex;
     private final List<Connection<H, C>> connections = new ArrayList<>();
 
     public NetworkNode(H host) {
@@ -41,6 +45,14 @@ public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
         return host;
     }
 
+    /**
+     * Return the index of this node in the node list of its network.
+     * Indices are dense, but only remain valid until the next topology change of the network.
+     */
+    public int getNetworkIndex() {
+        return networkIndex;
+    }
+
     public C getNetworkCache() {
         return network.cache;
     }
@@ -163,6 +163,33 @@ public abstract class NodeHost {
         }
     }
 
+    /**
+     * Update the contents of this host to its current share of its network, without separating the network.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public final void updateNetworkShare() {
+        @Nullable
+        NetworkNode node = findNode();
+
+        if (node != null && node.getHost() == this) {
+            node.getNetworkCache().updateNodeShare(node);
+        }
+    }
+
+    /**
+     * Wake the network of this host up if it is dormant, for example after a configuration change.
+     */
+    public final void wakeNetwork() {
+        if (pipe.getLevel() instanceof ServerLevel) {
+            @Nullable
+            NetworkNode<?, ?> node = findNode();
+
+            if (node != null) {
+                node.getNetworkCache().wakeUp();
+            }
+        }
+    }
+
     protected final void update() {
         if (needsUpdate) {
             needsUpdate = false;
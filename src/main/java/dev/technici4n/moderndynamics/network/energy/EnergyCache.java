@@ -21,12 +21,23 @@ package dev.technici4n.moderndynamics.network.energy;
 import com.google.common.primitives.Ints;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.shared.TransferDistributor;
 import java.util.*;
 import net.minecraft.server.level.ServerLevel;
 import net.neoforged.neoforge.energy.IEnergyStorage;
 
 public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
-    private SimpleEnergyStorage energyStorage = null;
+    /**
+     * Energy and capacity of the combined network. Longs, since the capacity of many pipes doesn't fit in an int.
+     */
+    private long energy = 0;
+    private long maxEnergy = 0;
+    private final TransferDistributor<IEnergyStorage> extractDistributor = new TransferDistributor<>();
+    private final TransferDistributor<IEnergyStorage> insertDistributor = new TransferDistributor<>();
+    /**
+     * Storages connected to the ticking nodes, gathered again every tick.
+     */
+    private final List<IEnergyStorage> storages = new ArrayList<>();
 
     public EnergyCache(ServerLevel level, List<NetworkNode<EnergyHost, EnergyCache>> nodes) {
         super(level, nodes);
@@ -34,29 +45,38 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
 
     public int getEnergyStored() {
         combine();
-        return energyStorage.getEnergyStored();
+        return Ints.saturatedCast(energy);
     }
 
     public int getMaxEnergyStored() {
         combine();
-        return energyStorage.getMaxEnergyStored();
+        return Ints.saturatedCast(maxEnergy);
     }
 
     public int insert(int maxAmount, boolean simulate) {
         combine();
-        return energyStorage.receiveEnergy(maxAmount, simulate);
+        int inserted = (int) Math.min(maxAmount, maxEnergy - energy);
+        if (inserted > 0 && !simulate) {
+            energy += inserted;
+            wakeUp();
+        }
+        return Math.max(0, inserted);
     }
 
     public int extract(int maxAmount, boolean simulate) {
         combine();
-        return energyStorage.extractEnergy(maxAmount, simulate);
+        int extracted = (int) Math.min(maxAmount, energy);
+        if (extracted > 0 && !simulate) {
+            energy -= extracted;
+            wakeUp();
+        }
+        return Math.max(0, extracted);
     }
 
     @Override
     protected void doCombine() {
         // Gather energy from nodes
-        int energy = 0;
-        int maxEnergy = 0;
+        energy = maxEnergy = 0;
 
         for (NetworkNode<EnergyHost, EnergyCache> node : nodes) {
             EnergyHost host = node.getHost();
@@ -64,28 +84,66 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
             energy += host.getEnergy();
             maxEnergy += host.getMaxEnergy();
         }
-
-        energyStorage = new SimpleEnergyStorage(maxEnergy, Integer.MAX_VALUE, Integer.MAX_VALUE);
-        energyStorage.setEnergy(energy);
     }
 
     @Override
     protected void doSeparate() {
         // Distribute new energy among nodes
-        // Start with nodes with the lowest capacity
-        nodes.sort(Comparator.comparingLong(node -> node.getHost().getMaxEnergy()));
+        // All the nodes have the same tier, hence the same capacity.
         int remainingNodes = nodes.size();
 
         for (NetworkNode<EnergyHost, EnergyCache> node : nodes) {
             EnergyHost host = node.getHost();
 
-            int nodeEnergy = Math.min(host.getMaxEnergy(), energyStorage.getEnergyStored() / remainingNodes);
+            int nodeEnergy = (int) Math.min(host.getMaxEnergy(), energy / remainingNodes);
             host.setEnergy(nodeEnergy);
-            energyStorage.reduceEnergyStored(nodeEnergy);
+            energy -= nodeEnergy;
             remainingNodes--;
         }
+    }
+
+    @Override
+    protected void doUpdateNodeShare(NetworkNode<EnergyHost, EnergyCache> node) {
+        EnergyHost host = node.getHost();
+        host.setEnergyShare((int) Math.min(host.getMaxEnergy(), getEvenShare(energy, node)));
+    }
+
+    @Override
+    protected void doAddNode(NetworkNode<EnergyHost, EnergyCache> node) {
+        EnergyHost host = node.getHost();
+        energy += host.getEnergy();
+        maxEnergy += host.getMaxEnergy();
+    }
 
-        energyStorage = null;
+    @Override
+    protected void doRemoveNode(NetworkNode<EnergyHost, EnergyCache> node) {
+        EnergyHost host = node.getHost();
+        int nodeEnergy = (int) Math.min(host.getMaxEnergy(), getEvenShare(energy, node));
+        host.setEnergy(nodeEnergy);
+        energy -= nodeEnergy;
+        maxEnergy -= host.getMaxEnergy();
+    }
+
+    @Override
+    protected void doMerge(EnergyCache other) {
+        energy += other.energy;
+        maxEnergy += other.maxEnergy;
+    }
+
+    @Override
+    protected void doSplit(EnergyCache other) {
+        long otherMaxEnergy = 0;
+        for (NetworkNode<EnergyHost, EnergyCache> node : other.nodes) {
+            otherMaxEnergy += node.getHost().getMaxEnergy();
+        }
+        // Split energy proportionally to the number of nodes, without overflowing
+        long totalNodes = nodes.size() + other.nodes.size();
+        long otherEnergy = energy / totalNodes * other.nodes.size() + energy % totalNodes * other.nodes.size() / totalNodes;
+
+        other.energy = Math.min(otherMaxEnergy, otherEnergy);
+        other.maxEnergy = otherMaxEnergy;
+        energy -= other.energy;
+        maxEnergy -= otherMaxEnergy;
     }
 
     @Override
@@ -94,72 +152,30 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
         combine();
 
         // Gather inventory connections
-        List<IEnergyStorage> storages = new ArrayList<>();
-
+        storages.clear();
         for (var node : nodes) {
             if (node.getHost().isTicking()) {
                 node.getHost().addEnergyStorages(storages);
             }
         }
 
+        // Transfers are int-based, so at most Integer.MAX_VALUE can move in each direction per tick
         // Extract
-        var remainingCapacity = energyStorage.getMaxEnergyStored() - energyStorage.getEnergyStored();
-        energyStorage.addEnergyStored(transferForTargets(IEnergyStorage::extractEnergy, storages, remainingCapacity));
+        int extracted = extractDistributor.distribute(storages, IEnergyStorage::extractEnergy, Ints.saturatedCast(maxEnergy - energy));
+        energy += extracted;
         // Insert
-        energyStorage.reduceEnergyStored(transferForTargets(IEnergyStorage::receiveEnergy, storages, energyStorage.getEnergyStored()));
-    }
+        int inserted = insertDistributor.distribute(storages, IEnergyStorage::receiveEnergy, Ints.saturatedCast(energy));
+        energy -= inserted;
 
-    /**
-     * Dispatch a transfer operation among a list of targets. Will not modify the list.
-     */
-    public static int transferForTargets(TransferOperation operation, List<IEnergyStorage> targets, int maxAmount) {
-        // Build target list
-        List<EnergyTarget> sortableTargets = new ArrayList<>(targets.size());
-        for (var target : targets) {
-            sortableTargets.add(new EnergyTarget(target));
-        }
-        // Shuffle for better transfer on average
-        Collections.shuffle(sortableTargets);
-        // Simulate the transfer for every target
-        for (EnergyTarget target : sortableTargets) {
-            target.simulationResult = operation.transfer(target.target, maxAmount, true);
-        }
-        // Sort from low to high result
-        sortableTargets.sort(Comparator.comparingLong(t -> t.simulationResult));
-        // Actually perform the transfer
-        int transferredAmount = 0;
-        for (int i = 0; i < sortableTargets.size(); ++i) {
-            EnergyTarget target = sortableTargets.get(i);
-            int remainingTargets = sortableTargets.size() - i;
-            int remainingAmount = maxAmount - transferredAmount;
-            int targetMaxAmount = Ints.saturatedCast(remainingAmount / remainingTargets);
-
-            transferredAmount += operation.transfer(target.target, targetMaxAmount, false);
-        }
-        return transferredAmount;
-    }
-
-    public interface TransferOperation {
-        int transfer(IEnergyStorage storage, int maxTransfer, boolean simulate);
-    }
-
-    private static class EnergyTarget {
-        final IEnergyStorage target;
-        int simulationResult;
-
-        EnergyTarget(IEnergyStorage target) {
-            this.target = target;
+        if (extracted > 0 || inserted > 0) {
+            wakeUp();
         }
     }
 
     @Override
     public void appendDebugInfo(StringBuilder out) {
         super.appendDebugInfo(out);
-        if (energyStorage == null) {
-            out.append("no energy storage\n");
-        } else {
-            out.append("energy = ").append(energyStorage.getEnergyStored()).append("\n");
-            out.append("max energy = ").append(energyStorage.getMaxEnergyStored()).append("\n");
-        }
+        out.append("energy = ").append(energy).append("\n");
+        out.append("max energy = ").append(maxEnergy).append("\n");
     }
 }
@@ -19,6 +19,7 @@
 package dev.technici4n.moderndynamics.network.energy;
 
 import dev.technici4n.moderndynamics.attachment.AttachmentItem;
+import dev.technici4n.moderndynamics.network.HostAdjacentCaps;
 import dev.technici4n.moderndynamics.network.NetworkManager;
 import dev.technici4n.moderndynamics.network.NetworkNode;
 import dev.technici4n.moderndynamics.network.NodeHost;
@@ -47,6 +48,11 @@ public class EnergyHost extends NodeHost {
     // Caps
     private final IEnergyStorage[] caps = new IEnergyStorage[6];
     private final IEnergyStorage unsidedCap = new ReadOnlyNetworkStorage();
+    private final HostAdjacentCaps<IEnergyStorage> adjacentCaps = new HostAdjacentCaps<>(this, Capabilities.EnergyStorage.BLOCK);
+    /**
+     * Rate-limited wrappers of the adjacent storages, kept as long as the adjacent capability doesn't change.
+     */
+    private final ExternalEnergyStorage[] externalStorages = new ExternalEnergyStorage[6];
 
     public EnergyHost(PipeBlockEntity pipe, EnergyPipeTier tier) {
         super(pipe);
@@ -91,6 +97,14 @@ public class EnergyHost extends NodeHost {
         pipe.setChanged();
     }
 
+    /**
+     * Set the energy of this host to its share of the combined network, before saving it.
+     * Unlike {@link #setEnergy}, the pipe is not marked as changed since it is already being saved.
+     */
+    void setEnergyShare(int energy) {
+        this.energy = energy;
+    }
+
     @Override
     protected void doUpdate() {
         updateConnections();
@@ -116,16 +130,19 @@ public class EnergyHost extends NodeHost {
         for (int i = 0; i < 6; ++i) {
             if ((inventoryConnections & (1 << i)) > 0 && (pipeConnections & (1 << i)) == 0) {
                 Direction dir = Direction.from3DDataValue(i);
-                IEnergyStorage adjacentCap = pipe.getLevel().getCapability(Capabilities.EnergyStorage.BLOCK, pipe.getBlockPos().relative(dir),
-                        dir.getOpposite());
+                IEnergyStorage adjacentCap = adjacentCaps.getCapability(dir);
 
                 if (adjacentCap != null) {
                     if (out != null) {
-                        out.add(new ExternalEnergyStorage(adjacentCap, i));
+                        if (externalStorages[i] == null || externalStorages[i].delegate != adjacentCap) {
+                            externalStorages[i] = new ExternalEnergyStorage(adjacentCap, i);
+                        }
+                        out.add(externalStorages[i]);
                     }
                 } else {
                     // Remove the direction from the bitmask
                     inventoryConnections ^= 1 << i;
+                    externalStorages[i] = null;
                 }
             }
         }
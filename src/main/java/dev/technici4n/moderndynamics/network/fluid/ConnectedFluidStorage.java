@@ -18,9 +18,7 @@
  */
 package dev.technici4n.moderndynamics.network.fluid;
 
-import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.attached.FluidAttachedIo;
-import java.util.function.Function;
 import net.neoforged.neoforge.fluids.capability.IFluidHandler;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,12 +29,4 @@ public record ConnectedFluidStorage(
          * Rate-limiting version of storage that takes into account the extractor
          */
         @Nullable IFluidHandler extractorFilteredStorage) {
-
-    public static Function<ConnectedFluidStorage, IFluidHandler> filterAttractors(boolean allowAttractors) {
-        return cfs -> {
-            boolean hasAttractor = cfs.attachment() != null && cfs.attachment().getType() == IoAttachmentType.ATTRACTOR;
-
-            return hasAttractor == allowAttractors ? cfs.storage() : null;
-        };
-    }
 }
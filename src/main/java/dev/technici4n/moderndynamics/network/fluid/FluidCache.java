@@ -18,19 +18,19 @@
  */
 package dev.technici4n.moderndynamics.network.fluid;
 
-import com.google.common.primitives.Ints;
 import dev.technici4n.moderndynamics.Constants;
 import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.attached.FluidAttachedIo;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.TickHelper;
+import dev.technici4n.moderndynamics.network.shared.TransferDistributor;
 import dev.technici4n.moderndynamics.util.FluidVariant;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.booleans.BooleanList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
 import java.util.function.Predicate;
 import net.minecraft.server.level.ServerLevel;
 import net.neoforged.neoforge.fluids.FluidStack;
@@ -39,9 +39,52 @@ import net.neoforged.neoforge.fluids.capability.IFluidHandler;
 import org.jetbrains.annotations.NotNull;
 
 public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
-    private FluidCacheStorage fluidStorage = null;
+    /**
+     * Combined contents of the network, allocated once and reused every time the network is combined.
+     * The network stays combined across ticks, and the share of each node is only written to its host from time to time,
+     * see {@link #updateHostShares}.
+     */
+    private final FluidCacheStorage fluidStorage = new FluidCacheStorage();
+    /**
+     * Contents of the network the last time the hosts were updated.
+     */
+    private FluidVariant sharedVariant = FluidVariant.blank();
+    private int sharedAmount = -1;
+    private int sharedNodeCount = -1;
+    private long sharesUpdateTick = TickHelper.getTickCounter() - Constants.Fluids.SHARE_UPDATE_INTERVAL;
     private int attractorBuffer = 0;
     private boolean allowNetworkIo = true;
+    /**
+     * Storages connected to the ticking nodes of this network, and the attractors among them.
+     * Only gathered again when a host was updated, the topology changed, or a host with connections started or stopped ticking.
+     */
+    private final List<ConnectedFluidStorage> targets = new ArrayList<>();
+    private final List<FluidAttachedIo> attractors = new ArrayList<>();
+    private boolean targetsInvalid = true;
+    /**
+     * Hosts with inventory connections, and whether they were ticking when the targets were gathered.
+     */
+    private final List<FluidHost> connectedHosts = new ArrayList<>();
+    private final BooleanList connectedHostsTicking = new BooleanArrayList();
+    /**
+     * Storages used by each transfer of the network tick, and the distributors that remember their demands.
+     */
+    private final List<IFluidHandler> extractorStorages = new ArrayList<>();
+    private final List<IFluidHandler> allStorages = new ArrayList<>();
+    private final List<IFluidHandler> attractorStorages = new ArrayList<>();
+    private final List<IFluidHandler> otherStorages = new ArrayList<>();
+    private final TransferDistributor<IFluidHandler> extractDistributor = new TransferDistributor<>();
+    private final TransferDistributor<IFluidHandler> attractDistributor = new TransferDistributor<>();
+    private final TransferDistributor<IFluidHandler> attractorFillDistributor = new TransferDistributor<>();
+    private final TransferDistributor<IFluidHandler> otherFillDistributor = new TransferDistributor<>();
+    private final TransferDistributor.Operation<IFluidHandler> drainOperation = (storage, maxAmount, simulate) -> drain(storage,
+            fluidStorage.variant, maxAmount, simulate ? IFluidHandler.FluidAction.SIMULATE : IFluidHandler.FluidAction.EXECUTE);
+    private final TransferDistributor.Operation<IFluidHandler> fillOperation = (storage, maxAmount, simulate) -> fill(storage,
+            fluidStorage.variant, maxAmount, simulate ? IFluidHandler.FluidAction.SIMULATE : IFluidHandler.FluidAction.EXECUTE);
+    /**
+     * Variant for which the distributors measured the demands of the storages.
+     */
+    private FluidVariant distributedVariant = FluidVariant.blank();
 
     protected FluidCache(ServerLevel level, List<NetworkNode<FluidHost, FluidCache>> networkNodes) {
         super(level, networkNodes);
@@ -69,16 +112,15 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
             }
         }
 
-        fluidStorage = new FluidCacheStorage();
         fluidStorage.variant = fv;
         fluidStorage.amount = amount;
+        sharedAmount = -1;
     }
 
     @Override
     protected void doSeparate() {
         // Distribute new energy among nodes
-        // Start with nodes with the lowest capacity
-        nodes.sort(Comparator.comparingLong(node -> Constants.Fluids.CAPACITY));
+        // All the nodes have the same capacity.
         int remainingNodes = nodes.size();
 
         for (NetworkNode<FluidHost, FluidCache> node : nodes) {
@@ -90,27 +132,122 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
             remainingNodes--;
         }
 
-        fluidStorage = null;
+        fluidStorage.variant = FluidVariant.blank();
+        fluidStorage.amount = 0;
     }
 
     @Override
-    public void doTick() {
-        // Make sure the network is combined
-        combine();
+    protected void doUpdateNodeShare(NetworkNode<FluidHost, FluidCache> node) {
+        var nodeAmount = (int) Math.min(Constants.Fluids.CAPACITY, getEvenShare(fluidStorage.amount, node));
+        node.getHost().setContentsShare(fluidStorage.variant, nodeAmount);
+    }
+
+    @Override
+    protected void doAddNode(NetworkNode<FluidHost, FluidCache> node) {
+        var host = node.getHost();
+
+        // Connections are only allowed between compatible fluids, but better be safe.
+        if (!host.getVariant().isBlank() && areCompatible(fluidStorage.variant, host.getVariant())) {
+            if (fluidStorage.variant.isBlank()) {
+                fluidStorage.variant = host.getVariant();
+            }
+            fluidStorage.amount += host.getAmount();
+        }
+    }
+
+    @Override
+    protected void doRemoveNode(NetworkNode<FluidHost, FluidCache> node) {
+        var nodeAmount = (int) Math.min(Constants.Fluids.CAPACITY, getEvenShare(fluidStorage.amount, node));
+        node.getHost().setContents(fluidStorage.variant, nodeAmount);
+        fluidStorage.amount -= nodeAmount;
+    }
+
+    @Override
+    protected void doMerge(FluidCache other) {
+        if (fluidStorage.variant.isBlank()) {
+            fluidStorage.variant = other.fluidStorage.variant;
+        }
+        if (areCompatible(fluidStorage.variant, other.fluidStorage.variant)) {
+            fluidStorage.amount += other.fluidStorage.amount;
+        }
+    }
+
+    @Override
+    protected void doSplit(FluidCache other) {
+        // Split fluid proportionally to the number of nodes
+        long totalNodes = nodes.size() + other.nodes.size();
+        int otherAmount = (int) ((long) fluidStorage.amount * other.nodes.size() / totalNodes);
+
+        other.fluidStorage.variant = fluidStorage.variant;
+        other.fluidStorage.amount = otherAmount;
+        fluidStorage.amount -= otherAmount;
+    }
+
+    @Override
+    protected void onTopologyChanged() {
+        targetsInvalid = true;
+    }
+
+    /**
+     * Gather the connected storages again before the next tick, for example after the connections or attachments of a host changed.
+     */
+    void invalidateTargets() {
+        targetsInvalid = true;
+    }
+
+    private void gatherTargets() {
+        targets.clear();
+        attractors.clear();
+        connectedHosts.clear();
+        connectedHostsTicking.clear();
 
-        // Gather inventory connections
-        List<ConnectedFluidStorage> targets = new ArrayList<>();
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
-                node.getHost().gatherCapabilities(targets);
+            var host = node.getHost();
+            boolean ticking = host.isTicking();
+            if (ticking) {
+                host.gatherCapabilities(targets);
+            }
+            if (host.inventoryConnections != 0) {
+                connectedHosts.add(host);
+                connectedHostsTicking.add(ticking);
             }
         }
 
-        List<FluidAttachedIo> attractors = new ArrayList<>();
+        extractorStorages.clear();
+        allStorages.clear();
+        attractorStorages.clear();
+        otherStorages.clear();
         for (var conn : targets) {
-            if (conn.attachment() != null && conn.attachment().getType() == IoAttachmentType.ATTRACTOR) {
+            boolean hasAttractor = conn.attachment() != null && conn.attachment().getType() == IoAttachmentType.ATTRACTOR;
+            if (hasAttractor) {
                 attractors.add(conn.attachment());
             }
+            if (conn.extractorFilteredStorage() != null) {
+                extractorStorages.add(conn.extractorFilteredStorage());
+            }
+            allStorages.add(conn.storage());
+            (hasAttractor ? attractorStorages : otherStorages).add(conn.storage());
+        }
+    }
+
+    private boolean hasTickingChanged() {
+        for (int i = 0; i < connectedHosts.size(); ++i) {
+            if (connectedHosts.get(i).isTicking() != connectedHostsTicking.getBoolean(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void doTick() {
+        // Make sure the network is combined
+        combine();
+
+        // Gather inventory connections
+        if (targetsInvalid || hasTickingChanged()) {
+            targetsInvalid = false;
+            gatherTargets();
         }
 
         boolean changedVariant = false;
@@ -127,11 +264,24 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
             }
 
             if (!fluidStorage.isResourceBlank()) {
+                if (!fluidStorage.variant.equals(distributedVariant)) {
+                    // The demands of the storages were measured for another fluid
+                    distributedVariant = fluidStorage.variant;
+                    extractDistributor.invalidateDemands();
+                    attractDistributor.invalidateDemands();
+                    attractorFillDistributor.invalidateDemands();
+                    otherFillDistributor.invalidateDemands();
+                }
+
                 // Take from connected storages
-                extractFluid(targets);
-                attractFluid(targets, attractors);
+                int moved = extractFluid();
+                moved += attractFluid();
                 // Push to connected storages
-                distributeFluid(targets);
+                moved += distributeFluid();
+
+                if (moved > 0) {
+                    wakeUp();
+                }
 
                 if (fluidStorage.amount == 0 && canChangeVariant()) {
                     fluidStorage.variant = FluidVariant.blank();
@@ -144,12 +294,36 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
 
         // Always separate after a change of variant to ensure that the nodes properly update their stored item.
         if (changedVariant) {
+            wakeUp();
             separate();
+        } else {
+            updateHostShares();
+        }
+    }
+
+    /**
+     * Write the share of each node to its host while staying combined, at most once every
+     * {@link Constants.Fluids#SHARE_UPDATE_INTERVAL} ticks, and only if the contents of the network changed.
+     * Hosts are only synced to the client if their visible fill level changed.
+     * Saving a pipe or sending it to a client always uses its exact share, see {@link #doUpdateNodeShare}.
+     */
+    private void updateHostShares() {
+        long currentTick = TickHelper.getTickCounter();
+        if (currentTick - sharesUpdateTick < Constants.Fluids.SHARE_UPDATE_INTERVAL) {
+            return;
+        }
+        if (fluidStorage.amount == sharedAmount && nodes.size() == sharedNodeCount && fluidStorage.variant.equals(sharedVariant)) {
+            return;
         }
+        sharesUpdateTick = currentTick;
+        sharedAmount = fluidStorage.amount;
+        sharedNodeCount = nodes.size();
+        sharedVariant = fluidStorage.variant;
 
-        // For the MVP, we separate again and then sync each item value.
-        // TODO: smarter item syncing logic
-        separate();
+        for (var node : nodes) {
+            var nodeAmount = (int) Math.min(Constants.Fluids.CAPACITY, getEvenShare(fluidStorage.amount, node));
+            node.getHost().updateContentsShare(fluidStorage.variant, nodeAmount);
+        }
     }
 
     /**
@@ -202,104 +376,48 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
     /**
      * Extract from connected storages that have an extractor.
      */
-    private void extractFluid(List<ConnectedFluidStorage> targets) {
-        fluidStorage.amount += transferForTargets(FluidCache::drain, targets, fluidStorage.variant,
-                fluidStorage.getCapacity() - fluidStorage.amount, ConnectedFluidStorage::extractorFilteredStorage);
+    private int extractFluid() {
+        int extracted = extractDistributor.distribute(extractorStorages, drainOperation, fluidStorage.getCapacity() - fluidStorage.amount);
+        fluidStorage.amount += extracted;
+        return extracted;
     }
 
     /**
      * Attract, i.e. extract from connected storages if there's attractors on the network.
      */
-    private void attractFluid(List<ConnectedFluidStorage> targets, List<FluidAttachedIo> attractors) {
+    private int attractFluid() {
         int attractorPower = 0;
         for (var attractor : attractors) {
             attractorPower += attractor.matchesFilter(fluidStorage.variant) ? attractor.getFluidMaxIo() : 0;
         }
         int maxAttract = attractorBuffer + attractorPower;
-        int attracted = transferForTargets(FluidCache::drain, targets, fluidStorage.variant,
-                Math.min(fluidStorage.getCapacity() - fluidStorage.amount, maxAttract),
-                ConnectedFluidStorage::storage);
+        int attracted = attractDistributor.distribute(allStorages, drainOperation,
+                Math.min(fluidStorage.getCapacity() - fluidStorage.amount, maxAttract));
         attractorBuffer = Math.min(maxAttract - attracted, FluidType.BUCKET_VOLUME);
         fluidStorage.amount += attracted;
+        return attracted;
     }
 
     /**
      * Distribute stored item among connected storages.
      */
-    private void distributeFluid(List<ConnectedFluidStorage> targets) {
+    private int distributeFluid() {
         // Insert into storages with attractors first
-        fluidStorage.amount -= transferForTargets(FluidCache::fill, targets, fluidStorage.variant,
-                fluidStorage.amount, ConnectedFluidStorage.filterAttractors(true));
+        int distributed = attractorFillDistributor.distribute(attractorStorages, fillOperation, fluidStorage.amount);
+        fluidStorage.amount -= distributed;
         // Insert into others
-        fluidStorage.amount -= transferForTargets(FluidCache::fill, targets, fluidStorage.variant,
-                fluidStorage.amount, ConnectedFluidStorage.filterAttractors(false));
-    }
-
-    /**
-     * Dispatch a transfer operation among a list of targets. Will not modify the list.
-     *
-     * @param storageGetter Can return null to skip the target
-     */
-    private static int transferForTargets(TransferOperation operation, List<ConnectedFluidStorage> targets, FluidVariant variant, int maxAmount,
-            Function<ConnectedFluidStorage, IFluidHandler> storageGetter) {
-        if (maxAmount == 0) {
-            return 0;
-        }
-
-        int intMaxAmount = Ints.saturatedCast(maxAmount);
-        // Build target list
-        List<FluidTarget> sortableTargets = new ArrayList<>(targets.size());
-        for (var target : targets) {
-            var storage = storageGetter.apply(target);
-
-            if (storage != null) {
-                sortableTargets.add(new FluidTarget(storage));
-            }
-        }
-        // Shuffle for better transfer on average
-        Collections.shuffle(sortableTargets);
-        // Simulate the transfer for every target
-        for (FluidTarget target : sortableTargets) {
-            target.simulationResult = operation.transfer(target.target, variant, intMaxAmount, IFluidHandler.FluidAction.SIMULATE);
-        }
-        // Sort from low to high result
-        sortableTargets.sort(Comparator.comparingLong(t -> t.simulationResult));
-        // Actually perform the transfer
-        int transferredAmount = 0;
-        for (int i = 0; i < sortableTargets.size(); ++i) {
-            FluidTarget target = sortableTargets.get(i);
-            int remainingTargets = sortableTargets.size() - i;
-            long remainingAmount = maxAmount - transferredAmount;
-            int targetMaxAmount = Ints.saturatedCast(remainingAmount / remainingTargets);
-
-            transferredAmount += operation.transfer(target.target, variant, targetMaxAmount, IFluidHandler.FluidAction.EXECUTE);
-        }
-        return transferredAmount;
-    }
-
-    interface TransferOperation {
-        int transfer(IFluidHandler storage, FluidVariant resource, int maxAmount, IFluidHandler.FluidAction action);
-    }
-
-    private static class FluidTarget {
-        final IFluidHandler target;
-        long simulationResult;
-
-        FluidTarget(IFluidHandler target) {
-            this.target = target;
-        }
+        int distributedToOthers = otherFillDistributor.distribute(otherStorages, fillOperation, fluidStorage.amount);
+        fluidStorage.amount -= distributedToOthers;
+        return distributed + distributedToOthers;
     }
 
     @Override
     public void appendDebugInfo(StringBuilder out) {
         super.appendDebugInfo(out);
-        if (fluidStorage == null) {
-            out.append("no item storage\n");
-        } else {
-            out.append("item variant = ").append(fluidStorage.variant).append("\n");
-            out.append("amount = ").append(fluidStorage.amount).append("\n");
-            out.append("capacity = ").append(fluidStorage.getCapacity()).append("\n");
-        }
+        out.append("item variant = ").append(fluidStorage.variant).append("\n");
+        out.append("amount = ").append(fluidStorage.amount).append("\n");
+        out.append("capacity = ").append(fluidStorage.getCapacity()).append("\n");
+        out.append("connected storages = ").append(targets.size()).append("\n");
     }
 
     static boolean areCompatible(FluidVariant v1, FluidVariant v2) {
@@ -349,6 +467,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
                         } else {
                             amount += insertedAmount;
                         }
+                        wakeUp();
                         update();
                     }
                     return insertedAmount;
@@ -373,6 +492,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
                     if (amount == 0 && canChangeVariant()) {
                         variant = FluidVariant.blank();
                     }
+                    wakeUp();
                     update();
                 }
 
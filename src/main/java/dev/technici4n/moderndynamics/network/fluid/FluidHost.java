@@ -63,6 +63,12 @@ public class FluidHost extends NodeHost {
     private final IFluidHandler[] caps = new IFluidHandler[6];
     private final IFluidHandler unsidedCap;
     private final HostAdjacentCaps<IFluidHandler> adjacentCaps = new HostAdjacentCaps<>(this, Capabilities.FluidHandler.BLOCK);
+    /**
+     * Adjacent storages wrapped with the filters and limits of this pipe, and the capability they were created for.
+     * Kept across network ticks, and only recreated when the adjacent capability or the attachment changes.
+     */
+    private final ConnectedFluidStorage[] connectedStorages = new ConnectedFluidStorage[6];
+    private final IFluidHandler[] connectedStorageCaps = new IFluidHandler[6];
 
     public FluidHost(PipeBlockEntity pipe) {
         super(pipe);
@@ -130,9 +136,46 @@ public class FluidHost extends NodeHost {
         }
     }
 
+    /**
+     * Set the contents of this host to its share of the combined network, before saving it.
+     * Unlike {@link #setContents}, the pipe is neither marked as changed nor synced.
+     */
+    void setContentsShare(FluidVariant variant, int amount) {
+        this.variant = variant;
+        this.amount = amount;
+    }
+
+    /**
+     * Set the contents of this host to its share of the combined network, while the network stays combined.
+     * The pipe is marked as changed, but only synced if the fill level that the client renders changed.
+     */
+    void updateContentsShare(FluidVariant variant, int amount) {
+        if (!variant.equals(this.variant) || amount != this.amount) {
+            boolean visibleChange = !variant.equals(this.variant) || getVisibleLevel(amount) != getVisibleLevel(this.amount);
+            this.variant = variant;
+            this.amount = amount;
+
+            pipe.setChanged();
+            if (visibleChange) {
+                pipe.sync(false);
+            }
+        }
+    }
+
+    private static int getVisibleLevel(int amount) {
+        // Round up, such that only empty pipes are at level 0.
+        return (amount * Constants.Fluids.VISIBLE_FILL_LEVELS + Constants.Fluids.CAPACITY - 1) / Constants.Fluids.CAPACITY;
+    }
+
     @Override
     protected void doUpdate() {
         updateConnections();
+
+        // Connections, attachments or redstone might have changed
+        NetworkNode<FluidHost, FluidCache> node = findNode();
+        if (node != null) {
+            node.getNetworkCache().invalidateTargets();
+        }
     }
 
     @Override
@@ -185,29 +228,17 @@ public class FluidHost extends NodeHost {
 
                 if (adjacentCap != null) {
                     if (out != null) {
-                        var attachment = getAttachment(dir) instanceof FluidAttachedIo io ? io : null;
-                        if (attachment == null) {
-                            out.add(new ConnectedFluidStorage(adjacentCap, null, null));
-                        } else if (attachment.isEnabledViaRedstone(pipe)) {
-                            var filteredStorage = new FilteringFluidHandler(adjacentCap) {
-                                @Override
-                                protected boolean canExtract(FluidVariant resource) {
-                                    return canMoveOutsideToNetwork(dir, resource);
-                                }
-
-                                @Override
-                                protected boolean canInsert(FluidVariant resource) {
-                                    return canMoveNetworkToOutside(dir, resource);
-                                }
-                            };
-                            var extractorRateLimit = attachment.getType() == IoAttachmentType.EXTRACTOR ? new ExtractorStorage(filteredStorage, i)
-                                    : null;
-                            out.add(new ConnectedFluidStorage(filteredStorage, attachment, extractorRateLimit));
+                        var connectedStorage = getConnectedStorage(dir, adjacentCap);
+                        var attachment = connectedStorage.attachment();
+                        if (attachment == null || attachment.isEnabledViaRedstone(pipe)) {
+                            out.add(connectedStorage);
                         }
                     }
                 } else {
                     // Remove the direction from the bitmask
                     inventoryConnections ^= 1 << i;
+                    connectedStorages[i] = null;
+                    connectedStorageCaps[i] = null;
                 }
             }
         }
@@ -217,6 +248,37 @@ public class FluidHost extends NodeHost {
         }
     }
 
+    private ConnectedFluidStorage getConnectedStorage(Direction dir, IFluidHandler adjacentCap) {
+        int i = dir.get3DDataValue();
+        var attachment = getAttachment(dir) instanceof FluidAttachedIo io ? io : null;
+        var connectedStorage = connectedStorages[i];
+
+        if (connectedStorage == null || connectedStorageCaps[i] != adjacentCap || connectedStorage.attachment() != attachment) {
+            if (attachment == null) {
+                connectedStorage = new ConnectedFluidStorage(adjacentCap, null, null);
+            } else {
+                var filteredStorage = new FilteringFluidHandler(adjacentCap) {
+                    @Override
+                    protected boolean canExtract(FluidVariant resource) {
+                        return canMoveOutsideToNetwork(dir, resource);
+                    }
+
+                    @Override
+                    protected boolean canInsert(FluidVariant resource) {
+                        return canMoveNetworkToOutside(dir, resource);
+                    }
+                };
+                var extractorRateLimit = attachment.getType() == IoAttachmentType.EXTRACTOR ? new ExtractorStorage(filteredStorage, i)
+                        : null;
+                connectedStorage = new ConnectedFluidStorage(filteredStorage, attachment, extractorRateLimit);
+            }
+            connectedStorages[i] = connectedStorage;
+            connectedStorageCaps[i] = adjacentCap;
+        }
+
+        return connectedStorage;
+    }
+
     public void updateConnections() {
         // Store old connections
         int oldConnections = inventoryConnections;
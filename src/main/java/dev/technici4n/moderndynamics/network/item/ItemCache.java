@@ -20,34 +20,174 @@ package dev.technici4n.moderndynamics.network.item;
 
 import com.google.common.base.Preconditions;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.TickHelper;
+import dev.technici4n.moderndynamics.network.shared.TimingWheel;
 import dev.technici4n.moderndynamics.util.ItemVariant;
+import java.util.ArrayList;
 import java.util.List;
+import net.minecraft.core.Direction;
 import net.minecraft.server.level.ServerLevel;
 import org.jetbrains.annotations.Nullable;
 
 public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
     private boolean inserting = false;
-    protected final ItemPathCache pathCache = new ItemPathCache();
+    protected final ItemPathCache pathCache;
+    /**
+     * Traveling items, bucketed by the tick at which they reach their next pipe.
+     * Items are not touched while they travel inside of a pipe.
+     */
+    private final TimingWheel<ScheduledItem> itemWheel = new TimingWheel<>(256);
+    private final List<ScheduledItem> dueItems = new ArrayList<>();
+    /**
+     * Extractors and attractors, bucketed by the tick of their next operation.
+     * The maximum operation delay is 200 ticks, so operations never need to wait for a second turn of the wheel.
+     */
+    private final TimingWheel<ScheduledOperation> operationWheel = new TimingWheel<>(256);
+    private final List<ScheduledOperation> dueOperations = new ArrayList<>();
+    /**
+     * Set until the active nodes of the network are first scheduled.
+     * Afterwards, nodes that join the network are scheduled when they join,
+     * and the items and operations of nodes that left the network are skipped when they are due.
+     */
+    private boolean activeNodesUnscheduled = true;
 
     protected ItemCache(ServerLevel level, List<NetworkNode<ItemHost, ItemCache>> networkNodes) {
         super(level, networkNodes);
+        this.pathCache = new ItemPathCache(level, networkNodes);
+    }
+
+    @Override
+    protected void onTopologyChanged() {
+        // Shortest paths may have changed
+        pathCache.onTopologyChanged();
+    }
+
+    @Override
+    protected void onNodesAdded(List<NetworkNode<ItemHost, ItemCache>> addedNodes) {
+        if (activeNodesUnscheduled) {
+            // The new nodes will be scheduled with the others.
+            return;
+        }
+        for (var node : addedNodes) {
+            scheduleNode(node);
+        }
     }
 
     @Override
     protected void doTick() {
+        if (activeNodesUnscheduled) {
+            activeNodesUnscheduled = false;
+            scheduleActiveNodes();
+        }
+
+        tickMovingItems();
+        tickOperations();
+    }
+
+    @Override
+    protected long getNextScheduledTick() {
+        return Math.min(itemWheel.getNextDueTick(), operationWheel.getNextDueTick());
+    }
+
+    private void scheduleActiveNodes() {
+        itemWheel.clear();
+        operationWheel.clear();
+
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
-                node.getHost().tickMovingItems();
+            scheduleNode(node);
+        }
+    }
+
+    private void scheduleNode(NetworkNode<ItemHost, ItemCache> node) {
+        for (var travelingItem : node.getHost().getTravelingItems()) {
+            scheduleItem(node, travelingItem);
+        }
+        scheduleOperations(node);
+    }
+
+    private void scheduleItem(NetworkNode<ItemHost, ItemCache> node, TravelingItem travelingItem) {
+        itemWheel.schedule(travelingItem.getNextPipeTick(), new ScheduledItem(node, travelingItem, ++travelingItem.scheduleGeneration));
+    }
+
+    private void tickMovingItems() {
+        if (itemWheel.size() == 0) {
+            return;
+        }
+        wakeUp();
+
+        long currentTick = TickHelper.getTickCounter();
+        itemWheel.pollDue(currentTick, dueItems);
+
+        for (var scheduled : dueItems) {
+            var node = scheduled.node();
+            if (scheduled.generation() != scheduled.item().scheduleGeneration || !containsNode(node)) {
+                // The item was scheduled again, or its node left the network.
+                // In both cases, the item is scheduled by the network it is currently in.
+                continue;
+            }
+            if (!node.getHost().isTicking()) {
+                // Wait until the pipe ticks again.
+                itemWheel.schedule(currentTick + 1, scheduled);
+                continue;
+            }
+
+            var travelingItem = scheduled.item();
+            var nextNode = node.getHost().moveTravelingItem(node, travelingItem);
+            if (nextNode != null) {
+                scheduleItem(nextNode, travelingItem);
             }
         }
+        dueItems.clear();
+    }
 
-        for (var node : nodes) {
-            if (node.getHost().isTicking()) {
-                node.getHost().tickAttachments();
+    private void tickOperations() {
+        long currentTick = TickHelper.getTickCounter();
+        operationWheel.pollDue(currentTick, dueOperations);
+
+        for (var operation : dueOperations) {
+            var host = operation.node().getHost();
+            int sideIndex = operation.side().get3DDataValue();
+            // Skip operations that were rescheduled in the meantime, or whose node left the network.
+            if (host.operationGenerations[sideIndex] == operation.generation() && containsNode(operation.node())) {
+                host.tickAttachment(operation.side());
+                scheduleOperation(operation.node(), operation.side(), currentTick);
             }
         }
+        dueOperations.clear();
+    }
+
+    void onTravelingItemAdded(NetworkNode<ItemHost, ItemCache> node, TravelingItem travelingItem) {
+        scheduleItem(node, travelingItem);
+        wakeUp();
+    }
+
+    /**
+     * (Re)schedule the operations of the extractors and attractors of a node, for example after they changed.
+     */
+    void scheduleOperations(NetworkNode<ItemHost, ItemCache> node) {
+        long currentTick = TickHelper.getTickCounter();
+        for (var side : Direction.values()) {
+            scheduleOperation(node, side, currentTick);
+        }
+    }
+
+    private void scheduleOperation(NetworkNode<ItemHost, ItemCache> node, Direction side, long currentTick) {
+        var host = node.getHost();
+        int generation = ++host.operationGenerations[side.get3DDataValue()];
+        long nextTick = host.getNextOperationTick(side, currentTick);
+
+        if (nextTick != ItemHost.NO_OPERATION) {
+            operationWheel.schedule(nextTick, new ScheduledOperation(node, side, generation));
+        }
+    }
+
+    private record ScheduledItem(NetworkNode<ItemHost, ItemCache> node, TravelingItem item, int generation) {
+    }
+
+    private record ScheduledOperation(NetworkNode<ItemHost, ItemCache> node, Direction side, int generation) {
     }
 
     /**
@@ -74,14 +214,27 @@ public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
                 if (!path.getEndFilter(level).test(variant)) {
                     continue;
                 }
-                // Don't schedule more items if the output is already stuffed.
-                if (path.getEndAttachment(level) instanceof ItemAttachedIo io && io.isStuffed()) {
-                    continue;
-                }
-
                 var simulatedTarget = path.getInsertionTarget(startingPoint.getHost().getPipe().getLevel());
+                int maxPathAmount = maxAmount - totalInserted;
+                boolean oversend = false;
+
+                if (path.getEndAttachment(level) instanceof ItemAttachedIo io) {
+                    // Don't schedule more items if the output is already stuffed.
+                    if (io.isStuffed()) {
+                        continue;
+                    }
+                    oversend = io.getOversendingMode() == OversendingMode.ALLOW_OVERSENDING;
+                    int maxItemsInInventory = io.getMaxItemsInInventory();
+                    if (maxItemsInInventory > 0) {
+                        // Traveling items count towards the maximum, unless over-sending is allowed.
+                        maxPathAmount = Math.min(maxPathAmount, simulatedTarget.getRemainingRoom(maxItemsInInventory, !oversend));
+                        if (maxPathAmount == 0) {
+                            continue;
+                        }
+                    }
+                }
 
-                totalInserted += simulatedTarget.insert(variant, maxAmount - totalInserted, simulate, (v, amount) -> {
+                totalInserted += simulatedTarget.insert(variant, maxPathAmount, simulate, oversend, (v, amount) -> {
                     var travelingItem = path.makeTravelingItem(v, amount, speedMultiplier);
                     startingPoint.getHost().addTravelingItem(travelingItem);
                 });
@@ -99,4 +252,13 @@ public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
             inserting = false;
         }
     }
+
+    @Override
+    public void appendDebugInfo(StringBuilder out) {
+        super.appendDebugInfo(out);
+        out.append("Traveling items = ").append(itemWheel.size()).append('\n');
+        out.append("Scheduled operations = ").append(operationWheel.size()).append('\n');
+        pathCache.appendDebugInfo(out);
+        SimulatedInsertionTargets.appendDebugInfo(level, out);
+    }
 }
@@ -23,6 +23,7 @@ import com.google.common.collect.Lists;
 import dev.technici4n.moderndynamics.attachment.AttachmentItem;
 import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
 import dev.technici4n.moderndynamics.network.HostAdjacentCaps;
 import dev.technici4n.moderndynamics.network.NetworkManager;
 import dev.technici4n.moderndynamics.network.NetworkNode;
@@ -30,6 +31,7 @@ import dev.technici4n.moderndynamics.network.NodeHost;
 import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.network.item.sync.ClientTravelingItem;
 import dev.technici4n.moderndynamics.network.item.sync.ClientTravelingItemSmoothing;
+import dev.technici4n.moderndynamics.network.item.sync.TravelingItemSync;
 import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
 import dev.technici4n.moderndynamics.util.DropHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
@@ -39,7 +41,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.function.Predicate;
 import net.minecraft.core.Direction;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.core.RegistryAccess;
@@ -58,9 +59,14 @@ import org.jetbrains.annotations.Nullable;
 
 public class ItemHost extends NodeHost {
     public static final NetworkManager<ItemHost, ItemCache> MANAGER = NetworkManager.get(ItemCache.class, ItemCache::new);
+    static final long NO_OPERATION = Long.MIN_VALUE;
     private final List<TravelingItem> travelingItems = new ArrayList<>();
     private final List<ClientTravelingItem> clientTravelingItems = new ArrayList<>();
     private final long[] lastOperationTick = new long[6];
+    /**
+     * Incremented every time the next operation of a side is rescheduled by the {@link ItemCache}, to skip outdated operations.
+     */
+    final int[] operationGenerations = new int[6];
     private final HostAdjacentCaps<IItemHandler> adjacentCaps = new HostAdjacentCaps<>(this, Capabilities.ItemHandler.BLOCK);
 
     public ItemHost(PipeBlockEntity pipe) {
@@ -109,7 +115,7 @@ public class ItemHost extends NodeHost {
             NetworkNode<ItemHost, ItemCache> node = findNode();
             if (node != null) {
                 var cache = node.getNetworkCache();
-                var paths = cache.pathCache.getPaths(node, side.getOpposite());
+                var paths = cache.pathCache.getPaths(node, side.getOpposite(), resource);
                 double speedupFactor = getAttachment(side) instanceof ItemAttachedIo io ? io.getItemSpeedupFactor() : 1;
                 return cache.insertList(node, paths, resource, maxAmount, simulate, speedupFactor, null);
             } else {
@@ -127,8 +133,8 @@ public class ItemHost extends NodeHost {
         double speedupFactor = extractor.getItemSpeedupFactor();
         NetworkNode<ItemHost, ItemCache> node = findNode();
         var cache = node.getNetworkCache();
-        var paths = rearrangePaths(cache.pathCache.getPaths(node, side.getOpposite()), extractor);
         return new InsertionOnlyItemHandler((resource, maxAmount, simulate) -> {
+            var paths = rearrangePaths(cache.pathCache.getPaths(node, side.getOpposite(), resource), extractor);
             return cache.insertList(node, paths, resource, maxAmount, simulate, speedupFactor, maxIndexParticipant);
         });
     }
@@ -168,19 +174,39 @@ public class ItemHost extends NodeHost {
         };
     }
 
-    public void tickAttachments() {
+    private static boolean hasOperation(ItemAttachedIo io) {
+        return io.getType() == IoAttachmentType.EXTRACTOR || io.getType() == IoAttachmentType.ATTRACTOR;
+    }
+
+    /**
+     * Return the tick at which the extractor or attractor on the given side should operate next,
+     * or {@link #NO_OPERATION} if there is no extractor or attractor on that side.
+     * Disabled attachments are checked again after their operation delay.
+     */
+    long getNextOperationTick(Direction side, long currentTick) {
+        if (getAttachment(side) instanceof ItemAttachedIo io && hasOperation(io)) {
+            if (isTicking() && io.isEnabledViaRedstone(pipe)) {
+                return Math.max(currentTick, lastOperationTick[side.get3DDataValue()] + io.getItemOperationTickDelay());
+            } else {
+                return currentTick + io.getItemOperationTickDelay();
+            }
+        }
+        return NO_OPERATION;
+    }
+
+    /**
+     * Operate the extractor or attractor on the given side, if it is enabled and due.
+     */
+    void tickAttachment(Direction side) {
         long currentTick = TickHelper.getTickCounter();
-        for (var side : Direction.values()) {
-            var attachment = getAttachment(side);
-            if (attachment instanceof ItemAttachedIo itemAttachedIo && itemAttachedIo.isEnabledViaRedstone(pipe)) {
-                if (currentTick - lastOperationTick[side.get3DDataValue()] < itemAttachedIo.getItemOperationTickDelay())
-                    continue;
-                lastOperationTick[side.get3DDataValue()] = currentTick;
-                if (itemAttachedIo.getType() == IoAttachmentType.EXTRACTOR) {
-                    tickExtractor(side, itemAttachedIo);
-                } else if (itemAttachedIo.getType() == IoAttachmentType.ATTRACTOR) {
-                    tickAttractor(side, itemAttachedIo);
-                }
+        if (isTicking() && getAttachment(side) instanceof ItemAttachedIo itemAttachedIo && itemAttachedIo.isEnabledViaRedstone(pipe)) {
+            if (currentTick - lastOperationTick[side.get3DDataValue()] < itemAttachedIo.getItemOperationTickDelay())
+                return;
+            lastOperationTick[side.get3DDataValue()] = currentTick;
+            if (itemAttachedIo.getType() == IoAttachmentType.EXTRACTOR) {
+                tickExtractor(side, itemAttachedIo);
+            } else if (itemAttachedIo.getType() == IoAttachmentType.ATTRACTOR) {
+                tickAttractor(side, itemAttachedIo);
             }
         }
     }
@@ -199,14 +225,14 @@ public class ItemHost extends NodeHost {
                 }
             }
         } else {
-            var adjStorage = getAdjacentStorage(side, false);
-            if (adjStorage == null)
+            var source = SimulatedExtractionSources.getSource(pipe.getLevel(), pipe.getBlockPos().relative(side), side.getOpposite(),
+                    () -> getAdjacentStorage(side, false));
+            if (source == null)
                 return;
 
             var maxParticipant = new MaxParticipant();
 
-            if (move(
-                    adjStorage,
+            if (source.move(
                     buildExtractorNetworkInjectStorage(side, extractor, maxParticipant),
                     extractor::matchesItemFilter,
                     extractor.getMaxItemsExtracted()) > 0) {
@@ -239,6 +265,13 @@ public class ItemHost extends NodeHost {
             var paths = rearrangePaths(pathCache.getPaths(thisNode, side.getOpposite()), attractor);
 
             int maxTransfer = attractor.getMaxItemsExtracted();
+            boolean oversend = attractor.getOversendingMode() == OversendingMode.ALLOW_OVERSENDING;
+            if (attractor.getMaxItemsInInventory() > 0) {
+                // Traveling items count towards the maximum, unless over-sending is allowed.
+                maxTransfer = Math.min(maxTransfer, insertTarget.getRemainingRoom(attractor.getMaxItemsInInventory(), !oversend));
+                if (maxTransfer == 0)
+                    return;
+            }
             int toTransfer = maxTransfer;
 
             int nextPathIndex = 0;
@@ -250,20 +283,20 @@ public class ItemHost extends NodeHost {
                     continue;
                 }
 
-                var extractTarget = pipe.getLevel().getCapability(Capabilities.ItemHandler.BLOCK, path.targetPos, path.getTargetBlockSide());
+                var extractTarget = SimulatedExtractionSources.getSource(cache.level, path.targetPos, path.getTargetBlockSide(),
+                        () -> path.getInsertionTarget(cache.level).getStorage());
                 if (extractTarget != null) {
                     // Make sure to check the filter at the endpoint.
                     var endpointFilter = path.getEndFilter(cache.level);
 
                     InsertionOnlyItemHandler insertStorage = new InsertionOnlyItemHandler((variant, maxAmount, simulate) -> {
-                        return insertTarget.insert(variant, maxAmount, simulate, (v, a) -> {
+                        return insertTarget.insert(variant, maxAmount, simulate, oversend, (v, a) -> {
                             var reversedPath = path.reversed();
                             var travelingItem = reversedPath.makeTravelingItem(v, a, attractor.getItemSpeedupFactor());
-                            reversedPath.getStartingPoint(cache.level).getHost().addTravelingItem(travelingItem);
+                            reversedPath.getStartingHost(cache.level).addTravelingItem(travelingItem);
                         });
                     });
-                    toTransfer -= move(
-                            extractTarget,
+                    toTransfer -= extractTarget.move(
                             insertStorage,
                             v -> attractor.matchesItemFilter(v) && endpointFilter.test(v),
                             toTransfer);
@@ -278,114 +311,77 @@ public class ItemHost extends NodeHost {
         }
     }
 
-    private int move(IItemHandler from, IItemHandler to, Predicate<ItemVariant> predicate, int maxAmount) {
-        var moved = 0;
-        for (int i = 0; i < from.getSlots(); i++) {
-            var extracted = from.extractItem(i, maxAmount - moved, true);
-            if (!extracted.isEmpty()) {
-                var variant = ItemVariant.of(extracted);
-                if (predicate.test(variant)) {
-                    var overflow = ItemHandlerHelper.insertItemStacked(to, extracted, true);
-                    var likelyToFit = extracted.getCount() - overflow.getCount();
-                    if (likelyToFit > 0) {
-                        extracted = from.extractItem(i, likelyToFit, false);
-                        overflow = ItemHandlerHelper.insertItemStacked(to, extracted, false);
-                        moved += extracted.getCount() - overflow.getCount();
-                    }
-                }
-            }
-        }
-        return moved;
+    List<TravelingItem> getTravelingItems() {
+        return travelingItems;
     }
 
-    public void tickMovingItems() {
-        if (travelingItems.isEmpty()) {
-            return;
+    /**
+     * Move an item that reached the end of its segment in this pipe, either to the next pipe of its path or into its target.
+     *
+     * @return the node that the item moved to, or null if the item left the network
+     */
+    @Nullable
+    NetworkNode<ItemHost, ItemCache> moveTravelingItem(NetworkNode<ItemHost, ItemCache> ownNode, TravelingItem travelingItem) {
+        if (!travelingItems.remove(travelingItem)) {
+            // The item was dropped in the meantime.
+            return null;
         }
+        travelingItem.moveToNextPipe();
+        pipe.setChanged();
 
-        long curTick = getLevel().getGameTime();
-
-        // List of items that moved out of this pipe.
-        List<TravelingItem> movedOut = new ArrayList<>();
-
-        for (var iterator = travelingItems.iterator(); iterator.hasNext();) {
-            var travelingItem = iterator.next();
+        int newIndex = (int) travelingItem.traveledDistance;
 
-            // Make sure we only update items once per tick.
-            // This makes sure that we don't update items twice if they get moved to another pipe.
-            if (travelingItem.lastTick == curTick) {
-                continue;
+        if (newIndex >= travelingItem.getPathLength() - 1) {
+            // End of path: inserting into a target storage.
+            // Prefer ignoring an attachment over dropping the item on the ground.
+            boolean checkAttachments = travelingItem.strategy != FailedInsertStrategy.DROP;
+            var side = travelingItem.path.get(newIndex);
+            var storage = getAdjacentStorage(side, checkAttachments);
+            if (storage == null) {
+                storage = EmptyItemHandler.INSTANCE;
             }
-            travelingItem.lastTick = curTick;
-
-            // Calculate in which path segment the item is now, and in which segment it is after moving it
-            int currentIndex = (int) travelingItem.traveledDistance;
-            travelingItem.traveledDistance += travelingItem.getSpeed();
-            int newIndex = (int) travelingItem.traveledDistance;
-
-            if (newIndex != currentIndex) {
-                // Item is moving out of this pipe!
-                movedOut.add(travelingItem);
-                iterator.remove();
+            int inserted = 0;
+            // Check filter.
+            if (!checkAttachments || !(getAttachment(side) instanceof ItemAttachedIo io) ||
+                    io.matchesItemFilter(travelingItem.variant) && io.isEnabledViaRedstone(pipe)) {
+                var overflow = ItemHandlerHelper.insertItemStacked(storage, travelingItem.variant.toStack(travelingItem.amount), false);
+                inserted = travelingItem.amount - overflow.getCount();
             }
-        }
-
-        for (var travelingItem : movedOut) {
-            int newIndex = (int) travelingItem.traveledDistance;
-
-            if (newIndex >= travelingItem.getPathLength() - 1) {
-                // End of path: inserting into a target storage.
-                // Prefer ignoring an attachment over dropping the item on the ground.
-                boolean checkAttachments = travelingItem.strategy != FailedInsertStrategy.DROP;
-                var side = travelingItem.path.path[newIndex];
-                var storage = getAdjacentStorage(side, checkAttachments);
-                if (storage == null) {
-                    storage = EmptyItemHandler.INSTANCE;
-                }
-                int inserted = 0;
-                // Check filter.
-                if (!checkAttachments || !(getAttachment(side) instanceof ItemAttachedIo io) ||
-                        io.matchesItemFilter(travelingItem.variant) && io.isEnabledViaRedstone(pipe)) {
-                    var overflow = ItemHandlerHelper.insertItemStacked(storage, travelingItem.variant.toStack(travelingItem.amount), false);
-                    inserted = travelingItem.amount - overflow.getCount();
-                }
-                finishTravel(travelingItem, inserted);
-            } else {
-                // Otherwise: must be inserting into another pipe. Check that the connection exists.
-                var adjPipeDirection = travelingItem.path.path[newIndex];
-
-                @Nullable
-                ItemHost adjacentItemHost = null;
-                NetworkNode<ItemHost, ItemCache> ownNode = findNode();
-                for (var connection : ownNode.getConnections()) {
-                    if (connection.direction() == adjPipeDirection) {
-                        adjacentItemHost = connection.target().getHost();
-                    }
-                }
+            finishTravel(travelingItem, inserted);
+            return null;
+        } else {
+            // Otherwise: must be inserting into another pipe. Check that the connection exists.
+            var adjPipeDirection = travelingItem.path.get(newIndex);
 
-                if (adjacentItemHost != null) {
+            for (var connection : ownNode.getConnections()) {
+                if (connection.direction() == adjPipeDirection) {
                     // All good: move to adjacent pipe
+                    var adjacentItemHost = connection.target().getHost();
+                    // No need to sync: clients move the item to the next pipe on their own.
                     adjacentItemHost.travelingItems.add(travelingItem);
                     adjacentItemHost.pipe.setChanged();
-                    adjacentItemHost.pipe.sync(false);
-                } else {
-                    // Cancel the travel and handle the overflow
-                    finishTravel(travelingItem, 0);
+                    return connection.target();
                 }
             }
-        }
 
-        pipe.setChanged();
-        pipe.sync(false);
+            // Cancel the travel and handle the overflow
+            TravelingItemSync.onItemRemoved(pipe, travelingItem);
+            finishTravel(travelingItem, 0);
+            return null;
+        }
     }
 
     private void finishTravel(TravelingItem item, int inserted) {
         // In any case, remove the item from the simulated insertion target
-        item.path.getInsertionTarget(pipe.getLevel()).stopAwaiting(item.variant, item.amount);
+        var insertionTarget = item.path.getInsertionTarget(pipe.getLevel());
+        insertionTarget.stopAwaiting(item.variant, item.amount);
+        if (inserted > 0) {
+            insertionTarget.onItemsInserted(inserted);
+        }
         int leftover = item.amount - inserted;
 
         // Try to stuff first!
-        var attachment = getAttachment(item.path.path[item.getPathLength() - 1]);
+        var attachment = getAttachment(item.path.getLastDirection());
         if (leftover > 0 && attachment instanceof ItemAttachedIo io && io.getType() != IoAttachmentType.FILTER) {
             boolean wasStuffed = io.isStuffed();
             io.getStuffedItems().merge(item.variant, item.amount, Integer::sum);
@@ -462,11 +458,23 @@ public class ItemHost extends NodeHost {
     public void addTravelingItem(TravelingItem travelingItem) {
         this.travelingItems.add(travelingItem);
         pipe.setChanged();
+        TravelingItemSync.onItemSpawned(pipe, travelingItem);
+
+        NetworkNode<ItemHost, ItemCache> node = findNode();
+        if (node != null) {
+            node.getNetworkCache().onTravelingItemAdded(node, travelingItem);
+        }
     }
 
     @Override
     protected void doUpdate() {
         updateConnections();
+
+        // Attachments or redstone might have changed
+        NetworkNode<ItemHost, ItemCache> node = findNode();
+        if (node != null) {
+            node.getNetworkCache().scheduleOperations(node);
+        }
     }
 
     public void gatherCapabilities() {
@@ -487,7 +495,7 @@ public class ItemHost extends NodeHost {
         if (oldConnections != inventoryConnections) {
             pipe.sync();
             NetworkNode<ItemHost, ItemCache> node = findNode();
-            node.getNetworkCache().pathCache.invalidate();
+            node.getNetworkCache().pathCache.updateTargets(node);
         }
     }
 
@@ -514,7 +522,7 @@ public class ItemHost extends NodeHost {
             try {
                 buf.writeInt(travelingItems.size());
                 for (var travelingItem : travelingItems) {
-                    travelingItem.writeClient(buf);
+                    ClientTravelingItem.STREAM_CODEC.encode(buf, travelingItem.toClient());
                 }
                 byte[] bytes = new byte[buf.readableBytes()];
                 buf.readBytes(bytes);
@@ -536,9 +544,7 @@ public class ItemHost extends NodeHost {
             try {
                 int count = buf.readInt();
                 for (int i = 0; i < count; i++) {
-                    var newItem = TravelingItem.readClient(buf);
-                    clientTravelingItems.add(newItem);
-                    ClientTravelingItemSmoothing.onReceiveItem(newItem);
+                    addClientTravelingItem(ClientTravelingItem.STREAM_CODEC.decode(buf));
                 }
             } finally {
                 buf.release();
@@ -572,7 +578,7 @@ public class ItemHost extends NodeHost {
                         for (var host : otherPipe.getHosts()) {
                             if (host instanceof ItemHost otherItemHost) {
                                 otherItemHost.clientTravelingItems.add(travelingItem);
-                                travelingItem.in = travelingItem.out; // ensure item appears from the correct side
+                                travelingItem.updateDirections(); // ensure item appears from the correct side
                             }
                         }
                     }
@@ -584,4 +590,13 @@ public class ItemHost extends NodeHost {
     public List<ClientTravelingItem> getClientTravelingItems() {
         return clientTravelingItems;
     }
+
+    public void addClientTravelingItem(ClientTravelingItem travelingItem) {
+        clientTravelingItems.add(travelingItem);
+        ClientTravelingItemSmoothing.onReceiveItem(travelingItem);
+    }
+
+    public boolean removeClientTravelingItem(int id) {
+        return clientTravelingItems.removeIf(travelingItem -> travelingItem.id == id);
+    }
 }
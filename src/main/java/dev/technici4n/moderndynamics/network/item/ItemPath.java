@@ -20,7 +20,6 @@ package dev.technici4n.moderndynamics.network.item;
 
 import dev.technici4n.moderndynamics.attachment.attached.AttachedAttachment;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
-import dev.technici4n.moderndynamics.network.NetworkNode;
 import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import java.util.function.Predicate;
@@ -31,6 +30,10 @@ import net.minecraft.world.level.Level;
 import org.jetbrains.annotations.Nullable;
 
 public class ItemPath {
+    private static final int BITS_PER_DIRECTION = 3;
+    private static final int DIRECTIONS_PER_LONG = Long.SIZE / BITS_PER_DIRECTION;
+    private static final long DIRECTION_MASK = (1L << BITS_PER_DIRECTION) - 1;
+
     /**
      * Starting position of the items, i.e. the chest they were pulled from. (Not the pipe!)
      */
@@ -38,27 +41,126 @@ public class ItemPath {
     public final BlockPos targetPos;
     /**
      * Contains the direction to turn for each path-element, to get from startingPos up until, but excluding targetPos.
+     * The 3D data values of the directions are packed 3 bits each. The array is shared with the reversed path.
+     */
+    private final long[] packedPath;
+    private final int length;
+    /**
+     * If true, this path is the reversed view of {@link #packedPath}.
      */
-    public final Direction[] path;
+    private final boolean reversedView;
     private @Nullable ItemPath reversed;
+    /**
+     * Endpoints of this path, resolved when first needed and checked for validity before every use.
+     * Only accessed from the server thread.
+     */
+    private @Nullable ItemHost startingHost;
+    private @Nullable ItemHost endHost;
+    private @Nullable SimulatedInsertionTarget insertionTarget;
 
     public ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path) {
-        this(startingPos, targetPos, path, null);
+        this(startingPos, targetPos, pack(path), path.length);
     }
 
-    private ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path, @Nullable ItemPath reversed) {
+    /**
+     * Create a path from directions that were already packed with {@link #newPackedPath} and {@link #setPackedDirection}.
+     */
+    ItemPath(BlockPos startingPos, BlockPos targetPos, long[] packedPath, int length) {
+        this(startingPos, targetPos, packedPath, length, false, null);
+    }
+
+    private ItemPath(BlockPos startingPos, BlockPos targetPos, long[] packedPath, int length, boolean reversedView,
+            @Nullable ItemPath reversed) {
         this.startingPos = startingPos;
         this.targetPos = targetPos;
-        this.path = path;
+        this.packedPath = packedPath;
+        this.length = length;
+        this.reversedView = reversedView;
         this.reversed = reversed;
     }
 
-    public NetworkNode<ItemHost, ItemCache> getStartingPoint(ServerLevel level) {
-        return ItemHost.MANAGER.findNode(level, startingPos.relative(path[0]));
+    static long[] newPackedPath(int length) {
+        return new long[(length + DIRECTIONS_PER_LONG - 1) / DIRECTIONS_PER_LONG];
+    }
+
+    static void setPackedDirection(long[] packedPath, int index, Direction direction) {
+        int shift = index % DIRECTIONS_PER_LONG * BITS_PER_DIRECTION;
+        packedPath[index / DIRECTIONS_PER_LONG] |= (long) direction.get3DDataValue() << shift;
+    }
+
+    private static long[] pack(Direction[] path) {
+        long[] packedPath = newPackedPath(path.length);
+        for (int i = 0; i < path.length; ++i) {
+            setPackedDirection(packedPath, i, path[i]);
+        }
+        return packedPath;
+    }
+
+    /**
+     * @return The number of directions in this path.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return The direction to turn for the path-element at the given index.
+     */
+    public Direction get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int packedIndex = reversedView ? length - 1 - index : index;
+        int shift = packedIndex % DIRECTIONS_PER_LONG * BITS_PER_DIRECTION;
+        var direction = Direction.from3DDataValue((int) (packedPath[packedIndex / DIRECTIONS_PER_LONG] >>> shift & DIRECTION_MASK));
+        return reversedView ? direction.getOpposite() : direction;
+    }
+
+    /**
+     * @return A new array containing the directions of this path.
+     */
+    public Direction[] toArray() {
+        Direction[] path = new Direction[length];
+        for (int i = 0; i < length; ++i) {
+            path[i] = get(i);
+        }
+        return path;
+    }
+
+    /**
+     * Return the host of the first pipe of this path, or null if there is no item pipe there anymore.
+     */
+    @Nullable
+    public ItemHost getStartingHost(Level level) {
+        if (startingHost == null || startingHost.getPipe().isRemoved()) {
+            startingHost = findHost(level, startingPos.relative(get(0)));
+        }
+        return startingHost;
+    }
+
+    /**
+     * Return the host of the last pipe of this path, or null if there is no item pipe there anymore.
+     */
+    @Nullable
+    ItemHost getEndHost(Level level) {
+        if (endHost == null || endHost.getPipe().isRemoved()) {
+            endHost = findHost(level, targetPos.relative(getTargetBlockSide()));
+        }
+        return endHost;
+    }
+
+    @Nullable
+    private static ItemHost findHost(Level level, BlockPos pos) {
+        return level.getBlockEntity(pos) instanceof PipeBlockEntity pipe ? pipe.findHost(ItemHost.class) : null;
     }
 
     public SimulatedInsertionTarget getInsertionTarget(Level world) {
-        return SimulatedInsertionTargets.getTarget(world, targetPos, getTargetBlockSide());
+        if (insertionTarget == null || insertionTarget.isEvicted()) {
+            insertionTarget = SimulatedInsertionTargets.getTarget(world, targetPos, getTargetBlockSide());
+        } else {
+            insertionTarget.markAccessed();
+        }
+        return insertionTarget;
     }
 
     /**
@@ -66,7 +168,7 @@ public class ItemPath {
      *         of {@link #getTargetBlockSide()}.
      */
     public Direction getLastDirection() {
-        return path[path.length - 1];
+        return get(length - 1);
     }
 
     /**
@@ -88,34 +190,38 @@ public class ItemPath {
 
     @Nullable
     AttachedAttachment getEndAttachment(ServerLevel level) {
-        var lastNode = ItemHost.MANAGER.findNode(level, targetPos.relative(getTargetBlockSide()));
-        var host = lastNode.getHost();
-        return host.getAttachment(getLastDirection());
+        var host = getEndHost(level);
+        return host == null ? null : host.getAttachment(getLastDirection());
     }
 
     /**
      * Return the predicate for the attachment at the very end of the pipe.
      */
     Predicate<ItemVariant> getEndFilter(ServerLevel level) {
-        var endPipe = targetPos.relative(getTargetBlockSide());
-        if (level.getBlockEntity(endPipe) instanceof PipeBlockEntity pipe) {
-            if (pipe.getAttachment(getLastDirection()) instanceof ItemAttachedIo io) {
-                if (!io.isEnabledViaRedstone(pipe)) {
-                    return v -> false;
-                }
-                return io::matchesItemFilter;
+        var host = getEndHost(level);
+        if (host != null && host.getAttachment(getLastDirection()) instanceof ItemAttachedIo io) {
+            if (!io.isEnabledViaRedstone(host.getPipe())) {
+                return v -> false;
             }
+            return io::matchesItemFilter;
         }
         return v -> true;
     }
 
+    /**
+     * Return the item attachment at the very end of the pipe, whose filter applies to the items sent along this path.
+     */
+    @Nullable
+    ItemAttachedIo getEndIo(ServerLevel level) {
+        return getEndAttachment(level) instanceof ItemAttachedIo io ? io : null;
+    }
+
+    /**
+     * @return The same path, traveled in the other direction. The directions are not copied.
+     */
     public ItemPath reversed() {
         if (reversed == null) {
-            Direction[] reversedPath = new Direction[path.length];
-            for (int i = 0; i < path.length; ++i) {
-                reversedPath[path.length - i - 1] = path[i].getOpposite();
-            }
-            reversed = new ItemPath(targetPos, startingPos, reversedPath, this);
+            reversed = new ItemPath(targetPos, startingPos, packedPath, length, !reversedView, this);
         }
         return reversed;
     }
@@ -18,120 +18,602 @@
  */
 package dev.technici4n.moderndynamics.network.item;
 
-import com.google.common.collect.Lists;
-import dev.technici4n.moderndynamics.attachment.attached.AttachedInhibitor;
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.ModernDynamics;
+import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
 import dev.technici4n.moderndynamics.network.NetworkNode;
-import it.unimi.dsi.fastutil.objects.Reference2LongMap;
-import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * Caches the paths from each source to every target of the network, sorted by distance.
+ * For each source, the shortest path tree is kept alongside the paths,
+ * such that changes to the inventory connections of a single pipe only update the affected targets.
+ * When pipes join or leave the network, the trees are patched:
+ * only the sources whose tree went through a removed pipe, or that a new pipe could give a shorter path, are recomputed.
+ *
+ * <p>
+ * Paths are computed over a {@link PathGraph} snapshot of the network, on a background thread.
+ * Until the result is available, the paths from before the last invalidation are used.
+ * New sources use the paths found by a search limited to the nearby pipes, see {@link Constants.Items#LOCAL_PATH_SEARCH_NODES}.
+ * Computations that finished before a topology change are patched like the other cached paths.
+ * {@link Constants.Items#SYNCHRONOUS_PATH_COMPUTATION} forces the computation to happen immediately instead.
+ *
+ * <p>
+ * Nodes are identified by their index in the node list of the network, which is stable until the next topology change.
+ * The cached trees are mapped to the new indices lazily, the next time the paths are needed.
+ */
 public class ItemPathCache {
-    private final Map<SidedNode, List<ItemPath>> cache = new HashMap<>();
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    /**
+     * Maximum number of variants for which the accepting paths of a source are cached, after which they are cleared.
+     */
+    private static final int MAX_CACHED_VARIANTS = 64;
+
+    private final ServerLevel level;
+    private final List<NetworkNode<ItemHost, ItemCache>> nodes;
+    private final Map<SidedNode, CachedPaths> cache = new HashMap<>();
+    private final Map<SidedNode, PendingPaths> pending = new HashMap<>();
+    /**
+     * Paths from before the last invalidation, used while the new paths are being computed.
+     */
+    private final Map<SidedNode, List<ItemPath>> stale = new HashMap<>();
+    /**
+     * Snapshot of the network, lazily captured after each topology change.
+     */
+    private @Nullable PathGraph graph;
+    /**
+     * The nodes of the network in index order, as they were when the cached paths were computed.
+     */
+    private List<NetworkNode<ItemHost, ItemCache>> layout = List.of();
+    /**
+     * Set when nodes joined or left the network since the cached paths were last mapped to the node indices.
+     */
+    private boolean topologyChanged = false;
+    private long hits = 0;
+    private long misses = 0;
+    private long staleHits = 0;
+    private long localSearches = 0;
+    private long topologyUpdates = 0;
+    private long invalidations = 0;
+    private long targetUpdates = 0;
+
+    public ItemPathCache(ServerLevel level, List<NetworkNode<ItemHost, ItemCache>> nodes) {
+        this.level = level;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Return the paths from a source whose endpoint filter accepts some variant, in the same order as {@link #getPaths}.
+     * Filters that are disabled via redstone are not taken into account, the endpoint filter still needs to be checked.
+     */
+    public List<ItemPath> getPaths(NetworkNode<ItemHost, ItemCache> startingPoint, Direction startingSide, ItemVariant variant) {
+        var paths = getPaths(startingPoint, startingSide);
+        var cached = cache.get(new SidedNode(startingPoint, startingSide));
+        if (cached == null) {
+            // Still computing, we are using outdated paths.
+            return paths;
+        }
+        return cached.getAcceptingPaths(level, variant);
+    }
 
     public List<ItemPath> getPaths(NetworkNode<ItemHost, ItemCache> startingPoint, Direction startingSide) {
-        return cache.computeIfAbsent(new SidedNode(startingPoint, startingSide), ItemPathCache::computePaths);
+        applyTopologyChanges();
+
+        var source = new SidedNode(startingPoint, startingSide);
+        var cached = cache.get(source);
+        if (cached != null) {
+            hits++;
+            return cached.paths;
+        }
+        misses++;
+
+        if (Constants.Items.SYNCHRONOUS_PATH_COMPUTATION) {
+            cached = computePaths(getGraph(), startingPoint.getNetworkIndex(), startingSide, Integer.MAX_VALUE);
+            return install(source, cached);
+        }
+
+        var pendingPaths = pending.get(source);
+        if (pendingPaths == null) {
+            var graph = getGraph();
+            int sourceIndex = startingPoint.getNetworkIndex();
+            var future = CompletableFuture.supplyAsync(() -> computePaths(graph, sourceIndex, startingSide, Integer.MAX_VALUE),
+                    Util.backgroundExecutor());
+            pendingPaths = new PendingPaths(future, new IntArraySet());
+            pending.put(source, pendingPaths);
+        }
+
+        if (pendingPaths.future.isDone()) {
+            pending.remove(source);
+            try {
+                cached = pendingPaths.future.join();
+            } catch (RuntimeException exception) {
+                ModernDynamics.LOGGER.error("Failed to compute item paths in the background, computing them again on the server thread",
+                        exception);
+                cached = computePaths(getGraph(), startingPoint.getNetworkIndex(), startingSide, Integer.MAX_VALUE);
+                return install(source, cached);
+            }
+            return installFinished(source, pendingPaths, cached);
+        }
+
+        staleHits++;
+        var stalePaths = stale.get(source);
+        if (stalePaths == null) {
+            // New source: find the nearby targets right away, rather than having no paths at all until the computation is done.
+            localSearches++;
+            int sourceIndex = startingPoint.getNetworkIndex();
+            stalePaths = computePaths(getGraph(), sourceIndex, startingSide, Constants.Items.LOCAL_PATH_SEARCH_NODES).paths;
+            stale.put(source, stalePaths);
+        }
+        return stalePaths;
+    }
+
+    private PathGraph getGraph() {
+        if (graph == null) {
+            graph = PathGraph.capture(nodes);
+            layout = new ArrayList<>(nodes);
+        }
+        return graph;
+    }
+
+    private boolean isInNetwork(NetworkNode<ItemHost, ItemCache> node) {
+        int index = node.getNetworkIndex();
+        return index < nodes.size() && nodes.get(index) == node;
+    }
+
+    /**
+     * Install the result of a background computation, after catching up with the changes that happened during the computation.
+     */
+    private List<ItemPath> installFinished(SidedNode source, PendingPaths pendingPaths, CachedPaths cached) {
+        for (int nodeIndex : pendingPaths.changedTargets) {
+            cached.updateTargets(getGraph(), nodeIndex);
+        }
+        return install(source, cached);
     }
 
-    public void invalidate() {
-        cache.clear();
+    private List<ItemPath> install(SidedNode source, CachedPaths cached) {
+        cache.put(source, cached);
+        stale.remove(source);
+        return cached.paths;
     }
 
-    private static List<ItemPath> computePaths(SidedNode startingPoint) {
-        // First, gather all targets, sorted by priority.
-        PriorityQueue<PqNode> pq = new PriorityQueue<>(Comparator.comparingLong(PqNode::distance));
-        Reference2LongMap<NetworkNode<ItemHost, ItemCache>> distance = new Reference2LongOpenHashMap<>();
-        Map<NetworkNode<ItemHost, ItemCache>, Direction> prevDirection = new IdentityHashMap<>();
-        Map<NetworkNode<ItemHost, ItemCache>, NetworkNode<ItemHost, ItemCache>> prevNode = new IdentityHashMap<>();
+    /**
+     * Record that nodes joined or left the network. The cached paths are patched the next time they are needed.
+     */
+    public void onTopologyChanged() {
+        // Finished computations are installed with the snapshot they were computed from, and patched with the other cached paths.
+        // Running computations use an outdated snapshot, the older paths of their sources are kept until they are started again.
+        for (var entry : pending.entrySet()) {
+            var pendingPaths = entry.getValue();
+            if (pendingPaths.future.isDone() && !pendingPaths.future.isCompletedExceptionally()) {
+                installFinished(entry.getKey(), pendingPaths, pendingPaths.future.join());
+            } else {
+                pendingPaths.future.cancel(false);
+            }
+        }
+        pending.clear();
+
+        topologyChanged = true;
+        graph = null;
+    }
+
+    /**
+     * Map the cached paths to the current node indices, and recompute the paths of the sources that might have changed.
+     */
+    private void applyTopologyChanges() {
+        if (!topologyChanged) {
+            return;
+        }
+        topologyChanged = false;
+        stale.keySet().removeIf(source -> !isInNetwork(source.node()));
+        if (cache.isEmpty()) {
+            return;
+        }
+        topologyUpdates++;
+
+        var oldLayout = layout;
+        layout = new ArrayList<>(nodes);
+
+        // Old index -> new index, or -1 for the nodes that left the network.
+        int[] newIndices = new int[oldLayout.size()];
+        boolean[] existingNodes = new boolean[layout.size()];
+        for (int i = 0; i < newIndices.length; ++i) {
+            var node = oldLayout.get(i);
+            if (isInNetwork(node)) {
+                newIndices[i] = node.getNetworkIndex();
+                existingNodes[newIndices[i]] = true;
+            } else {
+                newIndices[i] = -1;
+            }
+        }
+        IntList addedIndices = new IntArrayList();
+        for (int i = 0; i < existingNodes.length; ++i) {
+            if (!existingNodes[i]) {
+                addedIndices.add(i);
+            }
+        }
 
-        // We use a second priority queue for the targets.
-        // This might seem redundant, but it's an easy way for us to take into account inhibitors at the very end of a path,
+        for (var it = cache.entrySet().iterator(); it.hasNext();) {
+            var entry = it.next();
+            if (!isInNetwork(entry.getKey().node())) {
+                it.remove();
+            } else if (!entry.getValue().remap(newIndices, layout, addedIndices)) {
+                // Keep the current paths around until the new ones are ready.
+                invalidations++;
+                stale.put(entry.getKey(), entry.getValue().paths);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Update the paths to the targets of a node, after its inventory connections changed.
+     * The pipe graph must not have changed.
+     */
+    public void updateTargets(NetworkNode<ItemHost, ItemCache> node) {
+        applyTopologyChanges();
+        if (cache.isEmpty() && pending.isEmpty()) {
+            // Nothing to update.
+            return;
+        }
+        targetUpdates++;
+
+        // A new snapshot already contains the current targets of the node.
+        graph = graph == null ? getGraph() : graph.withTargetsOf(node);
+        int nodeIndex = node.getNetworkIndex();
+        for (var cached : cache.values()) {
+            cached.updateTargets(graph, nodeIndex);
+        }
+        for (var pendingPaths : pending.values()) {
+            pendingPaths.changedTargets.add(nodeIndex);
+        }
+    }
+
+    /**
+     * Compute the paths from a source over a snapshot of the network. Can be called from any thread.
+     *
+     * @param maxNodes Maximum number of nodes to visit. The paths to the targets of the visited nodes are still the shortest ones,
+     *                 since the nodes are visited by increasing distance.
+     */
+    private static CachedPaths computePaths(PathGraph graph, int sourceIndex, Direction sourceSide, int maxNodes) {
+        var cached = new CachedPaths(graph, sourceIndex, sourceSide);
+        var distance = cached.distance;
+        var parent = cached.parent;
+        var parentDirection = cached.parentDirection;
+
+        // We gather the targets separately and sort them at the end.
+        // This is an easy way for us to take into account inhibitors at the very end of a path,
         // which might still change the distance for the entire path, even if the distance to the end node doesn't change.
-        PriorityQueue<PqSidedNode> targets = new PriorityQueue<>(Comparator.comparingLong(PqSidedNode::distance));
+        List<Target> targets = new ArrayList<>();
+        // Entries are the distance in the upper 32 bits, and the node index in the lower 32 bits.
+        var queue = new LongHeapPriorityQueue();
 
-        pq.add(new PqNode(startingPoint.node, 0));
-        distance.put(startingPoint.node, 0);
+        distance[sourceIndex] = 0;
+        parent[sourceIndex] = -1;
+        queue.enqueue(sourceIndex);
+        int visitedNodes = 0;
 
-        while (!pq.isEmpty()) {
-            var currentPqNode = pq.poll();
-            var currentNode = currentPqNode.node;
-            long currentDistance = currentPqNode.distance;
+        while (!queue.isEmpty()) {
+            long entry = queue.dequeueLong();
+            int current = (int) entry;
+            int currentDistance = (int) (entry >>> 32);
 
-            if (currentDistance != distance.getLong(currentNode)) {
+            if (currentDistance != distance[current]) {
                 continue;
             }
+            if (++visitedNodes > maxNodes) {
+                break;
+            }
+
+            cached.gatherTargets(graph, current, targets);
+
+            for (int edge = graph.edgeStart[current]; edge < graph.edgeStart[current + 1]; ++edge) {
+                int target = graph.edgeTarget[edge];
+                int newDistance = currentDistance + graph.edgeWeight[edge];
+                if (distance[target] > newDistance) {
+                    distance[target] = newDistance;
+                    parent[target] = current;
+                    parentDirection[target] = graph.edgeDirection[edge];
+                    queue.enqueue((long) newDistance << 32 | target);
+                }
+            }
+        }
+
+        targets.sort(Comparator.comparingInt(Target::distance));
+        cached.setTargets(targets);
+        return cached;
+    }
+
+    public void appendDebugInfo(StringBuilder out) {
+        long requests = hits + misses;
+        out.append("Path cache: ").append(cache.size()).append(" sources, ");
+        out.append(hits).append("/").append(requests).append(" hits");
+        if (requests > 0) {
+            out.append(" (").append(100 * hits / requests).append("%)");
+        }
+        out.append(", ").append(topologyUpdates).append(" topology updates, ").append(invalidations).append(" invalidated sources, ");
+        out.append(targetUpdates).append(" target updates\n");
+        out.append("Path computations: ").append(pending.size()).append(" pending, ");
+        out.append(stale.size()).append(" stale sources, ").append(staleHits).append(" stale lookups, ");
+        out.append(localSearches).append(" local searches\n");
+    }
 
-            for (var side : currentNode.getHost().getInventoryConnections()) {
-                var attachment = currentNode.getHost().getAttachment(side);
-                if (attachment == null || attachment.allowsItemConnection()) { // Check that the attachment allows the connection in the first place.
-                    long edgeWeight = 1;
-                    if (currentNode.getHost().getAttachment(side) instanceof AttachedInhibitor) {
-                        edgeWeight += 1000;
+    /**
+     * The paths from one source, and the shortest path tree that they were built from.
+     * The arrays are indexed by node index.
+     */
+    private static class CachedPaths {
+        int sourceIndex;
+        final Direction sourceSide;
+        /**
+         * Position of the inventory the paths start from, shared by all the paths.
+         */
+        final BlockPos startPos;
+        int[] distance;
+        /**
+         * Index of the previous node on the shortest path, or -1 for the source.
+         */
+        int[] parent;
+        /**
+         * 3D data value of the direction from the previous node.
+         */
+        byte[] parentDirection;
+        List<Target> targets;
+        List<ItemPath> paths;
+        /**
+         * Attachment at the end of each path, resolved on the server thread when first needed.
+         * Only valid for {@link #filterVersion}, and null if there are no attachments.
+         */
+        @Nullable
+        ItemAttachedIo[] endIos;
+        boolean endIosResolved = false;
+        long filterVersion;
+        final Map<ItemVariant, List<ItemPath>> acceptingPaths = new HashMap<>();
+
+        CachedPaths(PathGraph graph, int sourceIndex, Direction sourceSide) {
+            this.sourceIndex = sourceIndex;
+            this.sourceSide = sourceSide;
+            this.startPos = graph.positions[sourceIndex].relative(sourceSide.getOpposite());
+            this.distance = new int[graph.nodeCount];
+            this.parent = new int[graph.nodeCount];
+            this.parentDirection = new byte[graph.nodeCount];
+            Arrays.fill(distance, UNREACHED);
+        }
+
+        void setTargets(List<Target> targets) {
+            this.targets = targets;
+            List<ItemPath> paths = new ArrayList<>(targets.size());
+            for (var target : targets) {
+                paths.add(target.path);
+            }
+            this.paths = Collections.unmodifiableList(paths);
+            this.endIosResolved = false;
+            this.acceptingPaths.clear();
+        }
+
+        List<ItemPath> getAcceptingPaths(ServerLevel level, ItemVariant variant) {
+            long currentFilterVersion = ItemAttachedIo.getFilterVersion();
+            if (!endIosResolved || filterVersion != currentFilterVersion) {
+                filterVersion = currentFilterVersion;
+                acceptingPaths.clear();
+                resolveEndIos(level);
+            }
+
+            if (endIos == null) {
+                // No filters at all.
+                return paths;
+            }
+
+            var accepting = acceptingPaths.get(variant);
+            if (accepting == null) {
+                if (acceptingPaths.size() >= MAX_CACHED_VARIANTS) {
+                    acceptingPaths.clear();
+                }
+                accepting = new ArrayList<>();
+                for (int i = 0; i < paths.size(); ++i) {
+                    var io = endIos[i];
+                    if (io == null || io.matchesItemFilter(variant)) {
+                        accepting.add(paths.get(i));
                     }
-                    targets.add(new PqSidedNode(new SidedNode(currentNode, side), currentDistance + edgeWeight));
+                }
+                accepting = Collections.unmodifiableList(accepting);
+                acceptingPaths.put(variant, accepting);
+            }
+            return accepting;
+        }
+
+        private void resolveEndIos(ServerLevel level) {
+            var ios = new ItemAttachedIo[paths.size()];
+            boolean anyIo = false;
+            for (int i = 0; i < ios.length; ++i) {
+                ios[i] = paths.get(i).getEndIo(level);
+                anyIo |= ios[i] != null;
+            }
+            endIos = anyIo ? ios : null;
+            endIosResolved = true;
+        }
+
+        /**
+         * Replace the targets of a node by the ones in the graph.
+         */
+        void updateTargets(PathGraph graph, int nodeIndex) {
+            List<Target> newTargets = new ArrayList<>(targets.size());
+            for (var target : targets) {
+                if (target.nodeIndex != nodeIndex) {
+                    newTargets.add(target);
                 }
             }
 
-            for (var connection : currentNode.getConnections()) {
-                long edgeWeight = 1;
-                if (currentNode.getHost().getAttachment(connection.direction()) instanceof AttachedInhibitor) {
-                    edgeWeight += 1000;
+            if (distance[nodeIndex] != UNREACHED) {
+                gatherTargets(graph, nodeIndex, newTargets);
+                newTargets.sort(Comparator.comparingInt(Target::distance));
+            }
+            setTargets(newTargets);
+        }
+
+        /**
+         * Map the shortest path tree to new node indices after nodes joined or left the network,
+         * and add the new nodes as leaves of the tree.
+         *
+         * @param newIndices   The new index of each node, or -1 if the node left the network.
+         * @param layout       The nodes of the network, by new index.
+         * @param addedIndices The new indices of the nodes that joined the network, in the order in which they joined.
+         * @return false if the tree can't be patched and the paths must be recomputed
+         */
+        boolean remap(int[] newIndices, List<NetworkNode<ItemHost, ItemCache>> layout, IntList addedIndices) {
+            int nodeCount = layout.size();
+            var newDistance = new int[nodeCount];
+            var newParent = new int[nodeCount];
+            var newParentDirection = new byte[nodeCount];
+            Arrays.fill(newDistance, UNREACHED);
+
+            // Removing a node only makes the paths through it longer, the other paths are still the shortest ones.
+            for (int i = 0; i < newIndices.length; ++i) {
+                int newIndex = newIndices[i];
+                if (newIndex == -1 || distance[i] == UNREACHED) {
+                    continue;
+                }
+                int oldParent = parent[i];
+                if (oldParent != -1 && newIndices[oldParent] == -1) {
+                    return false;
+                }
+                newDistance[newIndex] = distance[i];
+                newParent[newIndex] = oldParent == -1 ? -1 : newIndices[oldParent];
+                newParentDirection[newIndex] = parentDirection[i];
+            }
+
+            List<Target> newTargets = new ArrayList<>(targets.size());
+            for (var target : targets) {
+                int newIndex = newIndices[target.nodeIndex];
+                if (newIndex == -1) {
+                    return false;
                 }
-                if (connection.target().getHost().getAttachment(connection.direction().getOpposite()) instanceof AttachedInhibitor) {
-                    edgeWeight += 1000;
+                newTargets.add(new Target(newIndex, target.distance, target.path));
+            }
+
+            // A new node can be added as a leaf of the tree, unless it makes the path to one of its neighbors shorter.
+            int targetCount = newTargets.size();
+            for (int addedIndex : addedIndices) {
+                var node = layout.get(addedIndex);
+                int bestDistance = UNREACHED;
+                for (var connection : node.getConnections()) {
+                    int neighbor = connection.target().getNetworkIndex();
+                    if (neighbor >= nodeCount || layout.get(neighbor) != connection.target() || newDistance[neighbor] == UNREACHED) {
+                        continue;
+                    }
+                    int neighborDistance = newDistance[neighbor] + PathGraph.getWeight(node, connection);
+                    if (neighborDistance < bestDistance) {
+                        bestDistance = neighborDistance;
+                        newParent[addedIndex] = neighbor;
+                        newParentDirection[addedIndex] = (byte) connection.direction().getOpposite().get3DDataValue();
+                    }
+                }
+                if (bestDistance == UNREACHED) {
+                    // Not connected to the tree yet, for example because another network was merged into this one.
+                    return false;
                 }
-                long newDistance = currentDistance + edgeWeight;
-                if (distance.getOrDefault(connection.target(), Long.MAX_VALUE) > newDistance) {
-                    distance.put(connection.target(), newDistance);
-                    pq.add(new PqNode(connection.target(), newDistance));
-                    prevDirection.put(connection.target(), connection.direction());
-                    prevNode.put(connection.target(), currentNode);
+                for (var connection : node.getConnections()) {
+                    int neighbor = connection.target().getNetworkIndex();
+                    // Nodes that joined after this one are not part of the tree yet, they are checked when they are added.
+                    if (neighbor < nodeCount && layout.get(neighbor) == connection.target() && newDistance[neighbor] != UNREACHED
+                            && bestDistance + PathGraph.getWeight(node, connection) < newDistance[neighbor]) {
+                        return false;
+                    }
                 }
+                newDistance[addedIndex] = bestDistance;
             }
+
+            sourceIndex = newIndices[sourceIndex];
+            distance = newDistance;
+            parent = newParent;
+            parentDirection = newParentDirection;
+
+            for (int addedIndex : addedIndices) {
+                var host = layout.get(addedIndex).getHost();
+                gatherTargets(addedIndex, PathGraph.NodeTargets.of(host), host.getPipe().getBlockPos(), newTargets);
+            }
+            if (newTargets.size() != targetCount) {
+                newTargets.sort(Comparator.comparingInt(Target::distance));
+                setTargets(newTargets);
+            } else {
+                // Same paths, only the node indices changed.
+                targets = newTargets;
+            }
+            return true;
         }
 
-        // Build the paths
-        List<ItemPath> computedPaths = new ArrayList<>(targets.size());
-        for (var pqTarget : targets) {
-            var target = pqTarget.sidedNode;
-            var side = target.side;
+        /**
+         * Add the inventory connections of a node as targets.
+         */
+        void gatherTargets(PathGraph graph, int nodeIndex, List<Target> out) {
+            gatherTargets(nodeIndex, graph.targets[nodeIndex], graph.positions[nodeIndex], out);
+        }
 
-            if (target.node == startingPoint.node && side == startingPoint.side.getOpposite()) {
-                continue; // prevent insertion back into the source
+        private void gatherTargets(int nodeIndex, @Nullable PathGraph.NodeTargets nodeTargets, BlockPos nodePos, List<Target> out) {
+            if (nodeTargets == null) {
+                return;
             }
-            var adjPos = target.node.getHost().getPipe().getBlockPos().relative(side);
 
-            // Backtrack to find the path.
-            List<Direction> reversedPath = new ArrayList<>();
-            var current = target.node;
-            var currentDir = side;
-            while (current != null) {
-                reversedPath.add(currentDir);
-                currentDir = prevDirection.get(current);
-                current = prevNode.get(current);
+            for (int i = 0; i < nodeTargets.sides().length; ++i) {
+                var side = nodeTargets.sides()[i];
+                if (nodeIndex == sourceIndex && side == sourceSide.getOpposite()) {
+                    continue; // prevent insertion back into the source
+                }
+                var path = buildPath(nodeIndex, nodePos, side);
+                out.add(new Target(nodeIndex, distance[nodeIndex] + nodeTargets.weights()[i], path));
             }
-            reversedPath.add(startingPoint.side);
-            Direction[] path = Lists.reverse(reversedPath).toArray(Direction[]::new);
-            var startPos = startingPoint.node.getHost().getPipe().getBlockPos().relative(startingPoint.side.getOpposite());
-            computedPaths.add(new ItemPath(startPos, adjPos, path));
         }
 
-        return Collections.unmodifiableList(computedPaths);
+        private ItemPath buildPath(int targetIndex, BlockPos targetPos, Direction side) {
+            // Backtrack once to find the length of the path, and a second time to fill it.
+            int depth = 0;
+            for (int current = targetIndex; parent[current] != -1; current = parent[current]) {
+                depth++;
+            }
+
+            int length = depth + 2;
+            long[] path = ItemPath.newPackedPath(length);
+            ItemPath.setPackedDirection(path, 0, sourceSide);
+            ItemPath.setPackedDirection(path, length - 1, side);
+            int current = targetIndex;
+            for (int i = depth; i > 0; --i) {
+                ItemPath.setPackedDirection(path, i, Direction.from3DDataValue(parentDirection[current]));
+                current = parent[current];
+            }
+
+            var adjPos = targetPos.relative(side);
+            return new ItemPath(startPos, adjPos, path, length);
+        }
     }
 
-    private record SidedNode(NetworkNode<ItemHost, ItemCache> node, Direction side) {
+    /**
+     * A computation running in the background.
+     *
+     * @param changedTargets Nodes whose inventory connections changed since the computation was started.
+     */
+    private record PendingPaths(CompletableFuture<CachedPaths> future, IntSet changedTargets) {
     }
 
-    private record PqNode(NetworkNode<ItemHost, ItemCache> node, long distance) {
+    private record SidedNode(NetworkNode<ItemHost, ItemCache> node, Direction side) {
     }
 
-    private record PqSidedNode(SidedNode sidedNode, long distance) {
+    private record Target(int nodeIndex, int distance, ItemPath path) {
     }
 }
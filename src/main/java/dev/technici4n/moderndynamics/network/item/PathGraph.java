@@ -0,0 +1,151 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.attachment.attached.AttachedInhibitor;
+import dev.technici4n.moderndynamics.network.NetworkNode;
+import java.util.Arrays;
+import java.util.List;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable snapshot of the pipe graph of an item network, with the weights of the connections already resolved.
+ * Nodes are identified by their network index. Used to compute paths outside of the server thread.
+ */
+final class PathGraph {
+    final int nodeCount;
+    final BlockPos[] positions;
+    /**
+     * The connections of node {@code i} are stored at indices {@code [edgeStart[i], edgeStart[i+1])} of the edge arrays.
+     */
+    final int[] edgeStart;
+    final int[] edgeTarget;
+    final byte[] edgeDirection;
+    final int[] edgeWeight;
+    /**
+     * Inventory connections of each node that items can be inserted into, or null if there are none.
+     */
+    final @Nullable NodeTargets[] targets;
+
+    private PathGraph(int nodeCount, BlockPos[] positions, int[] edgeStart, int[] edgeTarget, byte[] edgeDirection, int[] edgeWeight,
+            @Nullable NodeTargets[] targets) {
+        this.nodeCount = nodeCount;
+        this.positions = positions;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+        this.edgeDirection = edgeDirection;
+        this.edgeWeight = edgeWeight;
+        this.targets = targets;
+    }
+
+    /**
+     * Capture the current state of the nodes. Must be called on the server thread.
+     */
+    static PathGraph capture(List<NetworkNode<ItemHost, ItemCache>> nodes) {
+        int nodeCount = nodes.size();
+        var positions = new BlockPos[nodeCount];
+        var edgeStart = new int[nodeCount + 1];
+        var targets = new NodeTargets[nodeCount];
+
+        int edgeCount = 0;
+        for (int i = 0; i < nodeCount; ++i) {
+            var node = nodes.get(i);
+            positions[i] = node.getHost().getPipe().getBlockPos();
+            targets[i] = NodeTargets.of(node.getHost());
+            edgeCount += node.getConnections().size();
+        }
+
+        var edgeTarget = new int[edgeCount];
+        var edgeDirection = new byte[edgeCount];
+        var edgeWeight = new int[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < nodeCount; ++i) {
+            edgeStart[i] = edge;
+            var node = nodes.get(i);
+            for (var connection : node.getConnections()) {
+                var target = connection.target();
+                int targetIndex = target.getNetworkIndex();
+                if (targetIndex >= nodeCount || nodes.get(targetIndex) != target) {
+                    continue; // the target did not join the network yet
+                }
+
+                edgeTarget[edge] = targetIndex;
+                edgeDirection[edge] = (byte) connection.direction().get3DDataValue();
+                edgeWeight[edge] = getWeight(node, connection);
+                edge++;
+            }
+        }
+        edgeStart[nodeCount] = edge;
+
+        return new PathGraph(nodeCount, positions, edgeStart, edgeTarget, edgeDirection, edgeWeight, targets);
+    }
+
+    /**
+     * Return the weight of a connection between two nodes, which is the same in both directions.
+     */
+    static int getWeight(NetworkNode<ItemHost, ItemCache> node, NetworkNode.Connection<ItemHost, ItemCache> connection) {
+        int weight = 1;
+        if (node.getHost().getAttachment(connection.direction()) instanceof AttachedInhibitor) {
+            weight += 1000;
+        }
+        if (connection.target().getHost().getAttachment(connection.direction().getOpposite()) instanceof AttachedInhibitor) {
+            weight += 1000;
+        }
+        return weight;
+    }
+
+    /**
+     * Return a copy of this graph with the inventory connections of one node replaced by its current ones.
+     * Must be called on the server thread.
+     */
+    PathGraph withTargetsOf(NetworkNode<ItemHost, ItemCache> node) {
+        var newTargets = targets.clone();
+        newTargets[node.getNetworkIndex()] = NodeTargets.of(node.getHost());
+        return new PathGraph(nodeCount, positions, edgeStart, edgeTarget, edgeDirection, edgeWeight, newTargets);
+    }
+
+    /**
+     * @param weights Weight of the final step into the inventory on each side.
+     */
+    record NodeTargets(Direction[] sides, int[] weights) {
+        @Nullable
+        static NodeTargets of(ItemHost host) {
+            var connections = host.getInventoryConnections();
+            var sides = new Direction[connections.size()];
+            var weights = new int[connections.size()];
+            int count = 0;
+
+            for (var side : connections) {
+                var attachment = host.getAttachment(side);
+                if (attachment == null || attachment.allowsItemConnection()) { // Check that the attachment allows the connection in the first place.
+                    sides[count] = side;
+                    weights[count] = attachment instanceof AttachedInhibitor ? 1001 : 1;
+                    count++;
+                }
+            }
+
+            if (count == 0) {
+                return null;
+            }
+            return new NodeTargets(Arrays.copyOf(sides, count), Arrays.copyOf(weights, count));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import net.neoforged.neoforge.items.IItemHandler;
+import net.neoforged.neoforge.items.ItemHandlerHelper;
+
+/**
+ * Summary of the extractable contents of an inventory, shared by all the extractors and attractors accessing it during a tick.
+ * The inventory is scanned once, and the summary is updated in place after each extraction.
+ * It is only scanned again if an extraction shows that the summary is outdated.
+ */
+public class SimulatedExtractionSource {
+    private static final byte UNKNOWN = 0, ACCEPTED = 1, REJECTED = 2;
+
+    private final IItemHandler storage;
+    private boolean scanned = false;
+    /**
+     * Non-empty slots, with the amount that can be extracted and the index of the variant in {@link #variants}.
+     */
+    private int size = 0;
+    private int[] slots = new int[0];
+    private int[] amounts = new int[0];
+    private int[] variantIndices = new int[0];
+    private final List<ItemVariant> variants = new ArrayList<>();
+
+    SimulatedExtractionSource(IItemHandler storage) {
+        this.storage = storage;
+    }
+
+    private void scan() {
+        scanned = true;
+        size = 0;
+        variants.clear();
+        Object2IntMap<ItemVariant> variantIndex = new Object2IntOpenHashMap<>();
+
+        int slotCount = storage.getSlots();
+        for (int i = 0; i < slotCount; ++i) {
+            var extracted = storage.extractItem(i, Integer.MAX_VALUE, true);
+            if (extracted.isEmpty()) {
+                continue;
+            }
+
+            var variant = ItemVariant.of(extracted);
+            int index = variantIndex.computeIfAbsent(variant, v -> {
+                variants.add(variant);
+                return variants.size() - 1;
+            });
+
+            if (size == slots.length) {
+                int newLength = Math.max(8, size * 2);
+                slots = Arrays.copyOf(slots, newLength);
+                amounts = Arrays.copyOf(amounts, newLength);
+                variantIndices = Arrays.copyOf(variantIndices, newLength);
+            }
+            slots[size] = i;
+            amounts[size] = extracted.getCount();
+            variantIndices[size] = index;
+            size++;
+        }
+    }
+
+    /**
+     * Move items matching a predicate to another storage, in slot order.
+     * The predicate is only tested once per variant.
+     *
+     * @return The number of items that were moved.
+     */
+    public int move(IItemHandler to, Predicate<ItemVariant> predicate, int maxAmount) {
+        if (!scanned) {
+            scan();
+        }
+
+        byte[] decisions = new byte[variants.size()];
+        int moved = 0;
+        boolean emptiedSlots = false;
+
+        for (int entry = 0; entry < size && moved < maxAmount; ++entry) {
+            if (amounts[entry] == 0) {
+                continue;
+            }
+            int variantIndex = variantIndices[entry];
+            var variant = variants.get(variantIndex);
+            if (decisions[variantIndex] == UNKNOWN) {
+                decisions[variantIndex] = predicate.test(variant) ? ACCEPTED : REJECTED;
+            }
+            if (decisions[variantIndex] == REJECTED) {
+                continue;
+            }
+
+            int toExtract = Math.min(amounts[entry], maxAmount - moved);
+            var overflow = ItemHandlerHelper.insertItemStacked(to, variant.toStack(toExtract), true);
+            var likelyToFit = toExtract - overflow.getCount();
+            if (likelyToFit > 0) {
+                int slot = slots[entry];
+                // The summary might be outdated if the inventory was modified by something else during this tick.
+                var check = storage.extractItem(slot, likelyToFit, true);
+                if (!variant.matches(check)) {
+                    scanned = false;
+                    continue;
+                }
+
+                var extracted = storage.extractItem(slot, check.getCount(), false);
+                overflow = ItemHandlerHelper.insertItemStacked(to, extracted, false);
+                moved += extracted.getCount() - overflow.getCount();
+
+                if (check.getCount() == likelyToFit && extracted.getCount() == likelyToFit) {
+                    // The inventory behaved as the summary predicted, update it in place.
+                    amounts[entry] -= likelyToFit;
+                    emptiedSlots |= amounts[entry] == 0;
+                } else {
+                    // Something else modified the inventory, the next user needs to scan again.
+                    scanned = false;
+                }
+            }
+        }
+
+        if (emptiedSlots && scanned) {
+            removeEmptyEntries();
+        }
+
+        return moved;
+    }
+
+    private void removeEmptyEntries() {
+        int kept = 0;
+        for (int entry = 0; entry < size; ++entry) {
+            if (amounts[entry] > 0) {
+                slots[kept] = slots[entry];
+                amounts[kept] = amounts[entry];
+                variantIndices[kept] = variantIndices[entry];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.neoforged.neoforge.items.IItemHandler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The simulated extraction sources accessed during the current tick. Cleared at the end of every tick.
+ */
+public class SimulatedExtractionSources {
+    private static final Map<ServerLevel, Long2ObjectOpenHashMap<SimulatedExtractionSource>[]> LEVELS = new IdentityHashMap<>();
+
+    /**
+     * Return the source for the inventory at some position, accessed from some side,
+     * or null if there is no inventory.
+     *
+     * @param storageFinder Used to find the inventory if it was not accessed yet during this tick.
+     */
+    @Nullable
+    public static SimulatedExtractionSource getSource(Level w, BlockPos pos, Direction side, Supplier<@Nullable IItemHandler> storageFinder) {
+        var bySide = LEVELS.computeIfAbsent((ServerLevel) w, l -> createMaps());
+        var sources = bySide[side.get3DDataValue()];
+        var source = sources.get(pos.asLong());
+        if (source == null) {
+            var storage = storageFinder.get();
+            if (storage == null) {
+                return null;
+            }
+            source = new SimulatedExtractionSource(storage);
+            sources.put(pos.asLong(), source);
+        }
+        return source;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Long2ObjectOpenHashMap<SimulatedExtractionSource>[] createMaps() {
+        var bySide = new Long2ObjectOpenHashMap[Direction.values().length];
+        for (int i = 0; i < bySide.length; ++i) {
+            bySide[i] = new Long2ObjectOpenHashMap<>();
+        }
+        return bySide;
+    }
+
+    public static void onEndTick() {
+        LEVELS.clear();
+    }
+
+    public static void clear() {
+        LEVELS.clear();
+    }
+}
@@ -19,11 +19,15 @@
 package dev.technici4n.moderndynamics.network.item;
 
 import com.google.common.base.Preconditions;
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import java.util.ArrayList;
-import java.util.List;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.function.Supplier;
 import net.minecraft.CrashReport;
@@ -35,6 +39,12 @@ import org.jetbrains.annotations.Nullable;
 
 // TODO: needs to support recursive queries if filters are being used.
 public class SimulatedInsertionTarget {
+    private static final int NO_VARIANT = -1;
+    /**
+     * Maximum number of variants in {@link #slotHints} and {@link #fullTicks}, after which they are cleared.
+     */
+    private static final int MAX_HINTS = 64;
+
     private final SimulatedInsertionTargets.Coord coord; // used for crash report info
     private final Supplier<@Nullable IItemHandler> storageFinder;
     /**
@@ -42,23 +52,73 @@ public class SimulatedInsertionTarget {
      */
     private final Object2IntMap<ItemVariant> pendingStacks = new Object2IntLinkedOpenHashMap<>();
     /**
-     * List of stacks that are already traveling and that the target should accept,
-     * for each slot.
+     * Stacks that are already traveling and that the target should accept, for each slot.
+     * Stored as the id of the variant in {@link #variantIds}, and the count. A count of 0 means that nothing is awaited.
+     */
+    private int[] awaitedVariants = new int[0];
+    private int[] awaitedCounts = new int[0];
+    private int awaitingSlots = 0;
+    /**
+     * Ids of the variants in {@link #awaitedVariants}. Reset when no slot is awaiting anything anymore.
+     */
+    private final Object2IntMap<ItemVariant> variantIds = new Object2IntOpenHashMap<>();
+    /**
+     * Slot where room was last found for each variant, where the next scan starts.
+     */
+    private final Object2IntMap<ItemVariant> slotHints = new Object2IntOpenHashMap<>();
+    /**
+     * Tick at which no room was found for each variant, to avoid scanning the whole target again during the same tick.
+     */
+    private final Object2LongMap<ItemVariant> fullTicks = new Object2LongOpenHashMap<>();
+    /**
+     * Stack passed to the target storage for simulated insertions, reused as long as the variant doesn't change.
+     */
+    private ItemStack probe = ItemStack.EMPTY;
+    private @Nullable ItemVariant probeVariant;
+    /**
+     * Number of items in the target storage as of the last scan, plus the items that were inserted by the pipes since then.
+     * Items that leave the target in other ways are only noticed by the next scan.
+     */
+    private long storedItems = 0;
+    private long storedItemsScanTick = TickHelper.getTickCounter() - Constants.Items.STORED_ITEMS_SCAN_INTERVAL;
+    /**
+     * Number of items that are traveling towards this target, pending or awaited.
+     */
+    private long travelingItems = 0;
+    /**
+     * Last tick at which this target was looked up, used to evict unused targets.
+     */
+    long lastAccessTick = TickHelper.getTickCounter();
+    /**
+     * Set once this target was evicted, after which the holders of this target must look it up again.
      */
-    private final List<ItemStack> awaitedStacks = new ArrayList<>();
+    private boolean evicted = false;
 
     public SimulatedInsertionTarget(SimulatedInsertionTargets.Coord coord, Supplier<@Nullable IItemHandler> storageFinder) {
         this.coord = coord;
         this.storageFinder = storageFinder;
+        this.variantIds.defaultReturnValue(NO_VARIANT);
+        this.fullTicks.defaultReturnValue(-1);
     }
 
     public boolean hasStorage() {
         return storageFinder.get() != null;
     }
 
-    public int insert(ItemVariant variant, int maxAmount, boolean simulate, StartTravelCallback callback) {
+    /**
+     * Return the current storage of this target. Also used to extract from the target.
+     */
+    @Nullable
+    public IItemHandler getStorage() {
+        return storageFinder.get();
+    }
+
+    /**
+     * @param oversend If true, ignore the items that are already traveling towards this target when checking for room.
+     */
+    public int insert(ItemVariant variant, int maxAmount, boolean simulate, boolean oversend, StartTravelCallback callback) {
         try {
-            return innerInsert(variant, maxAmount, simulate, callback);
+            return innerInsert(variant, maxAmount, simulate, oversend, callback);
         } catch (Throwable t) {
             var report = CrashReport.forThrowable(t, "Item pipe simulated insertion failed");
 
@@ -68,13 +128,14 @@ public class SimulatedInsertionTarget {
             target.setDetail("Storage", () -> Objects.toString(storageFinder.get(), null))
                     .setDetail("Item variant", variant)
                     .setDetail("Max amount", maxAmount)
-                    .setDetail("Simulate", simulate);
+                    .setDetail("Simulate", simulate)
+                    .setDetail("Oversend", oversend);
 
             throw new ReportedException(report);
         }
     }
 
-    private int innerInsert(ItemVariant variant, int maxAmount, boolean simulate, StartTravelCallback callback) {
+    private int innerInsert(ItemVariant variant, int maxAmount, boolean simulate, boolean oversend, StartTravelCallback callback) {
         Preconditions.checkArgument(!variant.isBlank(), "blank variant");
         Preconditions.checkArgument(maxAmount >= 0, "non-negative amount");
         var targetStorage = storageFinder.get();
@@ -82,6 +143,17 @@ public class SimulatedInsertionTarget {
             return 0;
         }
 
+        if (oversend) {
+            // Only check that the target could accept the stack right now, and keep it pending for the other senders.
+            int inserted = planIgnoringAwaited(targetStorage, variant, maxAmount);
+            if (!simulate && inserted > 0) {
+                pendingStacks.mergeInt(variant, inserted, Integer::sum);
+                travelingItems += inserted;
+                callback.startTravel(variant, inserted);
+            }
+            return inserted;
+        }
+
         // Try to plan for pending stacks to begin with...
         var pendingIterator = pendingStacks.object2IntEntrySet().iterator();
         while (pendingIterator.hasNext()) {
@@ -99,96 +171,211 @@ public class SimulatedInsertionTarget {
         int inserted = planForStack(targetStorage, variant, maxAmount, simulate);
 
         if (!simulate && inserted > 0) {
+            travelingItems += inserted;
             callback.startTravel(variant, inserted);
         }
 
         return inserted;
     }
 
+    /**
+     * Return how much of some stack the target would accept, regardless of the stacks that are already traveling.
+     */
+    private int planIgnoringAwaited(IItemHandler targetStorage, ItemVariant variant, int maxAmount) {
+        int remaining = maxAmount;
+        for (int slot = 0; slot < targetStorage.getSlots() && remaining > 0; ++slot) {
+            remaining -= simulateInsert(targetStorage, slot, variant, remaining);
+        }
+        return maxAmount - remaining;
+    }
+
+    /**
+     * Return how many items can still be sent to this target before it contains {@code maxItems} items.
+     * The items in the target are tracked incrementally, and only counted again every few ticks.
+     *
+     * @param countTraveling Whether the items that are already traveling towards this target count as well.
+     */
+    public int getRemainingRoom(int maxItems, boolean countTraveling) {
+        var targetStorage = storageFinder.get();
+        if (targetStorage == null) {
+            return 0;
+        }
+
+        long currentTick = TickHelper.getTickCounter();
+        if (currentTick - storedItemsScanTick >= Constants.Items.STORED_ITEMS_SCAN_INTERVAL) {
+            storedItemsScanTick = currentTick;
+            storedItems = 0;
+            for (int slot = 0; slot < targetStorage.getSlots(); ++slot) {
+                storedItems += targetStorage.getStackInSlot(slot).getCount();
+            }
+        }
+
+        long occupied = storedItems + (countTraveling ? travelingItems : 0);
+        return (int) Math.max(0, maxItems - occupied);
+    }
+
+    /**
+     * Notify this target that a traveling item was inserted into the target storage.
+     */
+    public void onItemsInserted(int count) {
+        storedItems += count;
+    }
+
     /**
      * Try to plan for some stack to be inserted, return how much is anticipated to be insertable.
      */
     private int planForStack(IItemHandler targetStorage, ItemVariant variant, int maxAmount, boolean simulate) {
-        // Extend pending list if necessary
         int targetSlots = targetStorage.getSlots();
-        while (awaitedStacks.size() < targetSlots) {
-            awaitedStacks.add(ItemStack.EMPTY);
+        ensureCapacity(targetSlots);
+        if (maxAmount == 0 || targetSlots == 0) {
+            return 0;
+        }
+
+        long currentTick = TickHelper.getTickCounter();
+        if (fullTicks.getLong(variant) == currentTick) {
+            return 0;
         }
 
-        // Used to limit stack allocations
-        ItemStack leftover = null;
+        int variantId = variantIds.getInt(variant);
+        int remaining = maxAmount;
+        // Start from the last slot that had room, large targets tend to be filled in order.
+        int slot = slotHints.getInt(variant);
+        if (slot >= targetSlots) {
+            slot = 0;
+        }
 
-        for (int i = 0; i < targetSlots; ++i) {
-            var pending = awaitedStacks.get(i);
+        for (int scanned = 0; scanned < targetSlots && remaining > 0; ++scanned, slot = slot + 1 == targetSlots ? 0 : slot + 1) {
+            int awaitedCount = awaitedCounts[slot];
+            int inserted;
 
-            if (pending.isEmpty()) {
+            if (awaitedCount == 0) {
                 // No pending stack, try to insert as much as we can.
-                if (leftover == null) {
-                    leftover = variant.toStack(maxAmount);
-                }
-
-                int toInsert = leftover.getCount();
-                leftover = targetStorage.insertItem(i, leftover, true);
-                int inserted = toInsert - leftover.getCount();
+                inserted = simulateInsert(targetStorage, slot, variant, remaining);
 
                 if (inserted > 0 && !simulate) {
-                    awaitedStacks.set(i, variant.toStack(inserted));
+                    if (variantId == NO_VARIANT) {
+                        variantId = variantIds.size();
+                        variantIds.put(variant, variantId);
+                    }
+                    awaitedVariants[slot] = variantId;
+                    awaitedCounts[slot] = inserted;
+                    awaitingSlots++;
                 }
-            } else if (variant.matches(pending)) {
+            } else if (awaitedVariants[slot] == variantId) {
                 // Pending stack, try to insert more than what is scheduled.
-                if (leftover == null) {
-                    leftover = variant.toStack(maxAmount);
-                }
-
-                int insertCount = pending.getCount() + leftover.getCount();
-                int inserted = insertCount - targetStorage.insertItem(i, variant.toStack(insertCount), true).getCount();
+                inserted = simulateInsert(targetStorage, slot, variant, awaitedCount + remaining) - awaitedCount;
 
-                int delta = inserted - pending.getCount();
-                if (delta > 0) {
-                    leftover.shrink(delta);
-                    if (!simulate) {
-                        pending.grow(delta);
-                    }
+                if (inserted > 0 && !simulate) {
+                    awaitedCounts[slot] += inserted;
                 }
+            } else {
+                continue;
             }
 
-            if (leftover != null && leftover.isEmpty()) {
-                break;
+            if (inserted > 0) {
+                remaining -= inserted;
+                putHint(slotHints, variant, slot);
+            }
+        }
+
+        if (remaining == maxAmount) {
+            if (fullTicks.size() >= MAX_HINTS) {
+                fullTicks.clear();
             }
+            fullTicks.put(variant, currentTick);
+        }
+        return maxAmount - remaining;
+    }
+
+    /**
+     * Return how much of a stack of some size the slot would accept.
+     */
+    private int simulateInsert(IItemHandler targetStorage, int slot, ItemVariant variant, int count) {
+        if (!variant.equals(probeVariant)) {
+            probe = variant.toStack(count);
+            probeVariant = variant;
+        } else {
+            probe.setCount(count);
         }
+        // Simulated insertions don't modify the stack, so we can keep using it.
+        return count - targetStorage.insertItem(slot, probe, true).getCount();
+    }
+
+    private void ensureCapacity(int slots) {
+        if (awaitedCounts.length < slots) {
+            awaitedVariants = Arrays.copyOf(awaitedVariants, slots);
+            awaitedCounts = Arrays.copyOf(awaitedCounts, slots);
+        }
+    }
+
+    private static void putHint(Object2IntMap<ItemVariant> hints, ItemVariant variant, int slot) {
+        if (hints.size() >= MAX_HINTS && !hints.containsKey(variant)) {
+            hints.clear();
+        }
+        hints.put(variant, slot);
+    }
+
+    void markAccessed() {
+        lastAccessTick = TickHelper.getTickCounter();
+    }
 
-        return leftover == null ? 0 : maxAmount - leftover.getCount();
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    void markEvicted() {
+        evicted = true;
+    }
+
+    /**
+     * Return true if no item is traveling towards this target, in which case it holds no state that would be lost by evicting it.
+     */
+    boolean isIdle() {
+        return pendingStacks.isEmpty() && awaitingSlots == 0;
+    }
+
+    /**
+     * Rough estimate of the memory used by this target, in bytes.
+     */
+    long estimateMemoryUsage() {
+        return 256 + 8L * awaitedCounts.length + 48L * (pendingStacks.size() + variantIds.size() + slotHints.size() + fullTicks.size());
     }
 
     public void startAwaiting(ItemVariant variant, int amount) {
         pendingStacks.mergeInt(variant, amount, Integer::sum);
+        travelingItems += amount;
     }
 
     public void stopAwaiting(ItemVariant variant, int amount) {
+        travelingItems = Math.max(0, travelingItems - amount);
+
         // Remove from pending stacks first
         int pending = pendingStacks.getInt(variant);
         if (pending > 0) {
-            if (pending >= amount) {
+            if (pending > amount) {
                 pendingStacks.put(variant, pending - amount);
                 amount = 0;
             } else {
+                // Don't keep empty entries, otherwise the target would never be idle again
                 pendingStacks.removeInt(variant);
                 amount -= pending;
             }
         }
 
         // Then remove from awaited stacks (starting from the end because why not)
-        if (amount > 0) {
-            for (int slot = awaitedStacks.size(); slot-- > 0;) {
-                var awaited = awaitedStacks.get(slot);
+        int variantId = variantIds.getInt(variant);
+        if (amount > 0 && variantId != NO_VARIANT) {
+            for (int slot = awaitedCounts.length; slot-- > 0;) {
+                int awaitedCount = awaitedCounts[slot];
 
-                if (variant.matches(awaited)) {
-                    if (awaited.getCount() > amount) {
-                        awaited.shrink(amount);
+                if (awaitedCount > 0 && awaitedVariants[slot] == variantId) {
+                    if (awaitedCount > amount) {
+                        awaitedCounts[slot] -= amount;
                         amount = 0;
                     } else {
-                        awaitedStacks.set(slot, ItemStack.EMPTY);
-                        amount -= awaited.getCount();
+                        awaitedCounts[slot] = 0;
+                        awaitingSlots--;
+                        amount -= awaitedCount;
                     }
 
                     if (amount == 0) {
@@ -196,6 +383,13 @@ public class SimulatedInsertionTarget {
                     }
                 }
             }
+
+            if (awaitingSlots == 0) {
+                variantIds.clear();
+            }
         }
+
+        // Room might have been freed.
+        fullTicks.clear();
     }
 }
@@ -18,7 +18,10 @@
  */
 package dev.technici4n.moderndynamics.network.item;
 
-import java.util.HashMap;
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.network.TickHelper;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -27,21 +30,135 @@ import net.minecraft.world.level.Level;
 import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
 import net.neoforged.neoforge.capabilities.Capabilities;
 
+/**
+ * The simulated insertion targets of each level.
+ * Targets are kept while items are traveling towards them.
+ * Otherwise, they are evicted once they were not used for {@link Constants.Items#INSERTION_TARGET_IDLE_TICKS} ticks.
+ */
 public class SimulatedInsertionTargets {
-    private static final Map<Coord, SimulatedInsertionTarget> TARGETS = new HashMap<>();
+    private static final Map<ServerLevel, LevelTargets> LEVELS = new IdentityHashMap<>();
+    private static long lastEvictionTick = 0;
 
     record Coord(ServerLevel world, BlockPos pos, Direction direction) {
     }
 
     public static SimulatedInsertionTarget getTarget(Level w, BlockPos pos, Direction side) {
         ServerLevel world = (ServerLevel) w;
-        return TARGETS.computeIfAbsent(new Coord(world, pos, side), coord -> {
-            var cache = BlockCapabilityCache.create(Capabilities.ItemHandler.BLOCK, world, pos, side);
-            return new SimulatedInsertionTarget(coord, cache::getCapability);
-        });
+        var target = LEVELS.computeIfAbsent(world, LevelTargets::new).getTarget(pos, side);
+        target.markAccessed();
+        return target;
+    }
+
+    public static void onEndTick() {
+        long currentTick = TickHelper.getTickCounter();
+        if (currentTick - lastEvictionTick < Constants.Items.INSERTION_TARGET_IDLE_TICKS) {
+            return;
+        }
+        lastEvictionTick = currentTick;
+
+        for (var levelTargets : LEVELS.values()) {
+            levelTargets.evictIdle(currentTick - Constants.Items.INSERTION_TARGET_IDLE_TICKS);
+        }
+    }
+
+    public static void onLevelUnload(ServerLevel level) {
+        var levelTargets = LEVELS.remove(level);
+        if (levelTargets != null) {
+            levelTargets.evictAll();
+        }
+    }
+
+    public static void appendDebugInfo(ServerLevel level, StringBuilder out) {
+        int levelCount = 0;
+        long levelMemory = 0;
+        var levelTargets = LEVELS.get(level);
+        if (levelTargets != null) {
+            levelCount = levelTargets.size();
+            levelMemory = levelTargets.estimateMemoryUsage();
+        }
+
+        int totalCount = 0;
+        for (var targets : LEVELS.values()) {
+            totalCount += targets.size();
+        }
+
+        out.append("Simulated insertion targets = ").append(levelCount).append(" in this level (~").append(levelMemory / 1024)
+                .append(" KiB), ").append(totalCount).append(" in total\n");
     }
 
     public static void clear() {
-        TARGETS.clear();
+        for (var levelTargets : LEVELS.values()) {
+            levelTargets.evictAll();
+        }
+        LEVELS.clear();
+        lastEvictionTick = 0;
+    }
+
+    private static class LevelTargets {
+        private final ServerLevel level;
+        /**
+         * Targets indexed by the side they are accessed from, then by position.
+         */
+        private final Long2ObjectOpenHashMap<SimulatedInsertionTarget>[] bySide;
+
+        @SuppressWarnings("unchecked")
+        LevelTargets(ServerLevel level) {
+            this.level = level;
+            this.bySide = new Long2ObjectOpenHashMap[Direction.values().length];
+            for (int i = 0; i < bySide.length; ++i) {
+                bySide[i] = new Long2ObjectOpenHashMap<>();
+            }
+        }
+
+        SimulatedInsertionTarget getTarget(BlockPos pos, Direction side) {
+            var targets = bySide[side.get3DDataValue()];
+            var target = targets.get(pos.asLong());
+            if (target == null) {
+                var coord = new Coord(level, pos.immutable(), side);
+                var cache = BlockCapabilityCache.create(Capabilities.ItemHandler.BLOCK, level, coord.pos(), side);
+                target = new SimulatedInsertionTarget(coord, cache::getCapability);
+                targets.put(pos.asLong(), target);
+            }
+            return target;
+        }
+
+        void evictIdle(long lastAccessThreshold) {
+            for (var targets : bySide) {
+                targets.values().removeIf(target -> {
+                    if (target.isIdle() && target.lastAccessTick < lastAccessThreshold) {
+                        target.markEvicted();
+                        return true;
+                    }
+                    return false;
+                });
+                targets.trim();
+            }
+        }
+
+        void evictAll() {
+            for (var targets : bySide) {
+                for (var target : targets.values()) {
+                    target.markEvicted();
+                }
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (var targets : bySide) {
+                size += targets.size();
+            }
+            return size;
+        }
+
+        long estimateMemoryUsage() {
+            long memory = 0;
+            for (var targets : bySide) {
+                for (var target : targets.values()) {
+                    memory += target.estimateMemoryUsage();
+                }
+            }
+            return memory;
+        }
     }
 }
@@ -19,14 +19,13 @@
 package dev.technici4n.moderndynamics.network.item;
 
 import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.network.item.sync.ClientTravelingItem;
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import dev.technici4n.moderndynamics.util.SerializationHelper;
 import java.util.concurrent.atomic.AtomicInteger;
-import net.minecraft.core.Direction;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.network.RegistryFriendlyByteBuf;
 
 public class TravelingItem {
     private static final AtomicInteger NEXT_ID = new AtomicInteger();
@@ -37,8 +36,16 @@ public class TravelingItem {
     public final ItemPath path;
     public final FailedInsertStrategy strategy;
     public final double speedMultiplier;
+    /**
+     * Distance traveled at {@link #distanceTick}. Items move at a constant speed,
+     * so the distance is only updated when the item moves to another pipe.
+     */
     public double traveledDistance;
-    public long lastTick;
+    public long distanceTick = TickHelper.getTickCounter();
+    /**
+     * Incremented every time a network schedules this item, such that outdated schedules can be skipped.
+     */
+    int scheduleGeneration;
 
     public TravelingItem(ItemVariant variant, int amount, ItemPath path, FailedInsertStrategy strategy, double speedMultiplier,
             double traveledDistance) {
@@ -55,7 +62,7 @@ public class TravelingItem {
     }
 
     public int getPathLength() {
-        return path.path.length;
+        return path.length();
     }
 
     /**
@@ -65,16 +72,41 @@ public class TravelingItem {
         return speedMultiplier * Constants.Items.SPEED_IN_PIPES;
     }
 
+    /**
+     * Return the distance traveled at the given tick. The item never leaves its current pipe before it is moved by the network.
+     */
+    public double getTraveledDistance(long tick) {
+        return Math.min(traveledDistance + (tick - distanceTick) * getSpeed(), Math.nextDown(Math.floor(traveledDistance) + 1));
+    }
+
+    /**
+     * Return the tick at which this item reaches the next pipe of its path.
+     */
+    public long getNextPipeTick() {
+        double remainingDistance = Math.floor(traveledDistance) + 1 - traveledDistance;
+        return distanceTick + Math.max(1, (long) Math.ceil(remainingDistance / getSpeed()));
+    }
+
+    /**
+     * Advance this item to the tick at which it reaches the next pipe of its path.
+     */
+    void moveToNextPipe() {
+        long nextPipeTick = getNextPipeTick();
+        // Guard against rounding errors, the item must end up in the next pipe.
+        traveledDistance = Math.max(traveledDistance + (nextPipeTick - distanceTick) * getSpeed(), Math.floor(traveledDistance) + 1);
+        distanceTick = nextPipeTick;
+    }
+
     public CompoundTag toNbt(HolderLookup.Provider registries) {
         CompoundTag nbt = new CompoundTag();
         nbt.put("v", variant.toNbt(registries));
         nbt.putInt("a", amount);
         nbt.put("start", SerializationHelper.posToNbt(path.startingPos));
         nbt.put("end", SerializationHelper.posToNbt(path.targetPos));
-        nbt.putString("path", SerializationHelper.encodePath(path.path));
+        nbt.putString("path", SerializationHelper.encodePath(path.toArray()));
         nbt.putDouble("speedMultiplier", speedMultiplier);
         nbt.putString("strategy", strategy.getSerializedName());
-        nbt.putDouble("d", traveledDistance);
+        nbt.putDouble("d", getTraveledDistance(TickHelper.getTickCounter()));
         return nbt;
     }
 
@@ -91,27 +123,10 @@ public class TravelingItem {
                 nbt.getDouble("d"));
     }
 
-    void writeClient(RegistryFriendlyByteBuf buf) {
-        buf.writeInt(id);
-        ItemVariant.STREAM_CODEC.encode(buf, variant);
-        buf.writeInt(amount);
-        buf.writeDouble(getPathLength() - 1);
-        buf.writeDouble(traveledDistance);
-        int currentBlock = (int) Math.floor(traveledDistance);
-        buf.writeEnum(path.path[currentBlock]);
-        buf.writeEnum(path.path[currentBlock + 1]);
-        buf.writeDouble(getSpeed());
-    }
-
-    static ClientTravelingItem readClient(RegistryFriendlyByteBuf buf) {
-        return new ClientTravelingItem(
-                buf.readInt(),
-                ItemVariant.STREAM_CODEC.decode(buf),
-                buf.readInt(),
-                buf.readDouble(),
-                buf.readDouble(),
-                buf.readEnum(Direction.class),
-                buf.readEnum(Direction.class),
-                buf.readDouble());
+    /**
+     * Snapshot of this item for the client, which moves it on its own afterwards.
+     */
+    ClientTravelingItem toClient() {
+        return new ClientTravelingItem(id, variant, amount, path.toArray(), getTraveledDistance(TickHelper.getTickCounter()), getSpeed());
     }
 }
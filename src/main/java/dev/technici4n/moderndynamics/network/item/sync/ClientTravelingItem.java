@@ -20,11 +20,21 @@ package dev.technici4n.moderndynamics.network.item.sync;
 
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import net.minecraft.core.Direction;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
 
 public final class ClientTravelingItem {
+    public static final StreamCodec<RegistryFriendlyByteBuf, ClientTravelingItem> STREAM_CODEC = StreamCodec.of(
+            (buf, item) -> item.write(buf),
+            ClientTravelingItem::read);
+
     public final int id;
     private final ItemVariant variant;
     private final int amount;
+    /**
+     * The whole path of the item, such that the client can move it from pipe to pipe on its own.
+     */
+    private final Direction[] path;
     public final double totalPathDistance;
     public double traveledDistance;
     public Direction in;
@@ -32,16 +42,47 @@ public final class ClientTravelingItem {
     final double speed;
     public long lastTick;
 
-    public ClientTravelingItem(int id, ItemVariant variant, int amount, double totalPathDistance, double traveledDistance, Direction in,
-            Direction out, double speed) {
+    public ClientTravelingItem(int id, ItemVariant variant, int amount, Direction[] path, double traveledDistance, double speed) {
         this.id = id;
         this.variant = variant;
         this.amount = amount;
-        this.totalPathDistance = totalPathDistance;
+        this.path = path;
+        this.totalPathDistance = path.length - 1;
         this.traveledDistance = traveledDistance;
-        this.in = in;
-        this.out = out;
         this.speed = speed;
+        updateDirections();
+    }
+
+    /**
+     * Update the in and out directions after the item moved to another pipe.
+     */
+    public void updateDirections() {
+        int currentBlock = (int) Math.floor(traveledDistance);
+        in = path[currentBlock];
+        out = path[Math.min(currentBlock + 1, path.length - 1)];
+    }
+
+    private void write(RegistryFriendlyByteBuf buf) {
+        buf.writeInt(id);
+        ItemVariant.STREAM_CODEC.encode(buf, variant);
+        buf.writeInt(amount);
+        buf.writeVarInt(path.length);
+        for (var direction : path) {
+            buf.writeByte(direction.get3DDataValue());
+        }
+        buf.writeDouble(traveledDistance);
+        buf.writeDouble(speed);
+    }
+
+    private static ClientTravelingItem read(RegistryFriendlyByteBuf buf) {
+        int id = buf.readInt();
+        var variant = ItemVariant.STREAM_CODEC.decode(buf);
+        int amount = buf.readInt();
+        var path = new Direction[buf.readVarInt()];
+        for (int i = 0; i < path.length; ++i) {
+            path[i] = Direction.from3DDataValue(buf.readByte());
+        }
+        return new ClientTravelingItem(id, variant, amount, path, buf.readDouble(), buf.readDouble());
     }
 
     public ItemVariant variant() {
@@ -0,0 +1,87 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item.sync;
+
+import dev.technici4n.moderndynamics.VisualSync;
+import dev.technici4n.moderndynamics.network.item.TravelingItem;
+import dev.technici4n.moderndynamics.packets.SyncTravelingItems;
+import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.network.protocol.common.ClientboundCustomPayloadPacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Collects the traveling items that spawned or were removed during the current tick,
+ * and sends them to the nearby players tracking the chunks of the pipes at the end of the tick.
+ * Clients move the items from pipe to pipe on their own, so nothing is sent while an item travels normally.
+ */
+public class TravelingItemSync {
+    private static final Map<ServerLevel, Long2ObjectMap<PendingEvents>> PENDING = new IdentityHashMap<>();
+
+    public static void onItemSpawned(PipeBlockEntity pipe, TravelingItem item) {
+        var pending = getPending(pipe);
+        pending.spawned.add(new SyncTravelingItems.Spawned(pipe.getBlockPos(), item.toClient()));
+        pending.positions.add(pipe.getBlockPos().asLong());
+    }
+
+    public static void onItemRemoved(PipeBlockEntity pipe, TravelingItem item) {
+        var pending = getPending(pipe);
+        pending.removed.add(new SyncTravelingItems.Removed(pipe.getBlockPos(), item.id));
+        pending.positions.add(pipe.getBlockPos().asLong());
+    }
+
+    private static PendingEvents getPending(PipeBlockEntity pipe) {
+        var level = (ServerLevel) pipe.getLevel();
+        return PENDING.computeIfAbsent(level, l -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(ChunkPos.asLong(pipe.getBlockPos()), p -> new PendingEvents());
+    }
+
+    /**
+     * Called at the end of the server tick.
+     */
+    public static void onEndTick() {
+        for (var levelEntry : PENDING.entrySet()) {
+            var level = levelEntry.getKey();
+            for (var chunkEntry : levelEntry.getValue().long2ObjectEntrySet()) {
+                var events = chunkEntry.getValue();
+                VisualSync.sendToPlayersInRange(level, new ChunkPos(chunkEntry.getLongKey()),
+                        () -> new ClientboundCustomPayloadPacket(new SyncTravelingItems(events.spawned, events.removed)), events.positions);
+            }
+        }
+        PENDING.clear();
+    }
+
+    public static void clear() {
+        PENDING.clear();
+    }
+
+    private static class PendingEvents {
+        final List<SyncTravelingItems.Spawned> spawned = new ArrayList<>();
+        final List<SyncTravelingItems.Removed> removed = new ArrayList<>();
+        final LongSet positions = new LongOpenHashSet();
+    }
+}
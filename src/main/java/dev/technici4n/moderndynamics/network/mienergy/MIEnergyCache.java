@@ -21,7 +21,7 @@ package dev.technici4n.moderndynamics.network.mienergy;
 import com.google.common.base.Preconditions;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
-import dev.technici4n.moderndynamics.network.energy.EnergyCache;
+import dev.technici4n.moderndynamics.network.shared.TransferDistributor;
 import java.util.ArrayList;
 import java.util.List;
 import net.minecraft.server.level.ServerLevel;
@@ -30,6 +30,8 @@ import net.neoforged.neoforge.energy.IEnergyStorage;
 public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
     private long energy = 0;
     private long maxEnergy = 0;
+    private final TransferDistributor<IEnergyStorage> extractDistributor = new TransferDistributor<>();
+    private final TransferDistributor<IEnergyStorage> insertDistributor = new TransferDistributor<>();
 
     protected MIEnergyCache(ServerLevel level, List<NetworkNode<MIEnergyHost, MIEnergyCache>> networkNodes) {
         super(level, networkNodes);
@@ -59,6 +61,50 @@ public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
         }
     }
 
+    @Override
+    protected void doUpdateNodeShare(NetworkNode<MIEnergyHost, MIEnergyCache> node) {
+        var host = node.getHost();
+        host.setEnergyShare(Math.min(host.getMaxEnergy(), getEvenShare(energy, node)));
+    }
+
+    @Override
+    protected void doAddNode(NetworkNode<MIEnergyHost, MIEnergyCache> node) {
+        energy = saturatedSum(energy, node.getHost().getEnergy());
+        maxEnergy = saturatedSum(maxEnergy, node.getHost().getMaxEnergy());
+    }
+
+    @Override
+    protected void doRemoveNode(NetworkNode<MIEnergyHost, MIEnergyCache> node) {
+        var host = node.getHost();
+
+        long nodeEnergy = Math.min(host.getMaxEnergy(), getEvenShare(energy, node));
+        host.setEnergy(nodeEnergy);
+        energy -= nodeEnergy;
+        maxEnergy -= host.getMaxEnergy();
+    }
+
+    @Override
+    protected void doMerge(MIEnergyCache other) {
+        energy = saturatedSum(energy, other.energy);
+        maxEnergy = saturatedSum(maxEnergy, other.maxEnergy);
+    }
+
+    @Override
+    protected void doSplit(MIEnergyCache other) {
+        long otherMaxEnergy = 0;
+        for (var node : other.nodes) {
+            otherMaxEnergy = saturatedSum(otherMaxEnergy, node.getHost().getMaxEnergy());
+        }
+        // Split energy proportionally to the number of nodes, without overflowing
+        long totalNodes = nodes.size() + other.nodes.size();
+        long otherEnergy = energy / totalNodes * other.nodes.size() + energy % totalNodes * other.nodes.size() / totalNodes;
+
+        other.energy = Math.min(otherMaxEnergy, otherEnergy);
+        other.maxEnergy = otherMaxEnergy;
+        energy -= other.energy;
+        maxEnergy -= otherMaxEnergy;
+    }
+
     @Override
     protected void doTick() {
         // Make sure the network is combined
@@ -77,9 +123,15 @@ public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
 
         // tier.getMax() is an int and energy is unsigned, so casting to (int) is safe
         // Extract
-        energy += EnergyCache.transferForTargets(IEnergyStorage::extractEnergy, storages, (int) Math.min(maxEnergy - energy, tier.getMax()));
+        int extracted = extractDistributor.distribute(storages, IEnergyStorage::extractEnergy, (int) Math.min(maxEnergy - energy, tier.getMax()));
+        energy += extracted;
         // Insert
-        energy -= EnergyCache.transferForTargets(IEnergyStorage::receiveEnergy, storages, (int) Math.min(energy, tier.getMax()));
+        int inserted = insertDistributor.distribute(storages, IEnergyStorage::receiveEnergy, (int) Math.min(energy, tier.getMax()));
+        energy -= inserted;
+
+        if (extracted > 0 || inserted > 0) {
+            wakeUp();
+        }
     }
 
     // Energy is unsigned. Hence we handle only one case of satured addition (same sign)
@@ -131,6 +131,14 @@ public class MIEnergyHost extends NodeHost {
         return tier.getMax();
     }
 
+    /**
+     * Set the energy of this host to its share of the combined network, before saving it.
+     * Unlike {@link #setEnergy}, the pipe is not marked as changed since it is already being saved.
+     */
+    void setEnergyShare(long energy) {
+        this.energy = energy;
+    }
+
     public void setEnergy(long energy) {
         if (energy < 0 || energy > getMaxEnergy()) {
             throw new IllegalArgumentException("Invalid energy value " + energy);
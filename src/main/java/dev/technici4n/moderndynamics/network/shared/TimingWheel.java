@@ -0,0 +1,145 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.shared;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buckets elements by the tick at which they are due, so that only the elements that are due are visited.
+ * Elements that are scheduled further than the size of the wheel in the future are kept until they are due.
+ * The wheel does not support removal: elements that are not relevant anymore must be skipped by the caller.
+ */
+public class TimingWheel<E> {
+    private final List<E>[] elements;
+    private final LongArrayList[] dueTicks;
+    private final int mask;
+    private long lastPolledTick = Long.MIN_VALUE;
+    private int size = 0;
+    /**
+     * Earliest tick at which an element is due, only meaningful if {@link #nextDueTickValid} is set.
+     */
+    private long nextDueTick = Long.MAX_VALUE;
+    private boolean nextDueTickValid = true;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int buckets) {
+        Preconditions.checkArgument(buckets > 0 && (buckets & (buckets - 1)) == 0, "Number of buckets must be a power of two.");
+        this.elements = new List[buckets];
+        this.dueTicks = new LongArrayList[buckets];
+        this.mask = buckets - 1;
+        for (int i = 0; i < buckets; ++i) {
+            elements[i] = new ArrayList<>();
+            dueTicks[i] = new LongArrayList();
+        }
+    }
+
+    /**
+     * Schedule an element. If the tick was already polled, the element will be returned by the next poll.
+     *
+     * @return the tick at which the element was actually scheduled
+     */
+    public long schedule(long tick, E element) {
+        if (tick <= lastPolledTick) {
+            tick = lastPolledTick + 1;
+        }
+        int bucket = (int) (tick & mask);
+        elements[bucket].add(element);
+        dueTicks[bucket].add(tick);
+        size++;
+        nextDueTick = Math.min(nextDueTick, tick);
+        return tick;
+    }
+
+    /**
+     * Remove all the elements that are due at the current tick or earlier, and add them to {@code out}.
+     * Ticks that were skipped since the last poll are also processed.
+     */
+    public void pollDue(long currentTick, List<E> out) {
+        if (currentTick <= lastPolledTick) {
+            return;
+        }
+        if (nextDueTick <= currentTick) {
+            // Some elements are polled, the next due tick is recomputed lazily.
+            nextDueTickValid = false;
+        }
+        long firstTick = lastPolledTick == Long.MIN_VALUE ? currentTick - mask : Math.max(lastPolledTick + 1, currentTick - mask);
+        lastPolledTick = currentTick;
+
+        for (long tick = firstTick; tick <= currentTick && size > 0; ++tick) {
+            int bucket = (int) (tick & mask);
+            var bucketElements = elements[bucket];
+            var bucketTicks = dueTicks[bucket];
+            if (bucketElements.isEmpty()) {
+                continue;
+            }
+
+            // Keep the elements that are not due yet, and compact the bucket in place.
+            int kept = 0;
+            for (int i = 0; i < bucketElements.size(); ++i) {
+                long dueTick = bucketTicks.getLong(i);
+                if (dueTick <= currentTick) {
+                    out.add(bucketElements.get(i));
+                    size--;
+                } else {
+                    bucketElements.set(kept, bucketElements.get(i));
+                    bucketTicks.set(kept, dueTick);
+                    kept++;
+                }
+            }
+            bucketElements.subList(kept, bucketElements.size()).clear();
+            bucketTicks.size(kept);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; ++i) {
+            elements[i].clear();
+            dueTicks[i].clear();
+        }
+        size = 0;
+        nextDueTick = Long.MAX_VALUE;
+        nextDueTickValid = true;
+    }
+
+    /**
+     * Return the earliest tick at which an element is due, or {@link Long#MAX_VALUE} if the wheel is empty.
+     */
+    public long getNextDueTick() {
+        if (!nextDueTickValid) {
+            nextDueTick = Long.MAX_VALUE;
+            for (var bucketTicks : dueTicks) {
+                for (int i = 0; i < bucketTicks.size(); ++i) {
+                    nextDueTick = Math.min(nextDueTick, bucketTicks.getLong(i));
+                }
+            }
+            nextDueTickValid = true;
+        }
+        return nextDueTick;
+    }
+
+    /**
+     * Number of scheduled elements, including the ones that the caller will skip.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.shared;
+
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.network.TickHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distributes a transfer fairly among a list of targets, by "water-filling":
+ * every target receives the same share, except the targets that want less than that, which receive what they want.
+ *
+ * <p>The demand of each target is remembered from the last transfer, such that only the targets whose demand is unknown
+ * or stale need a simulated transfer. A demand of zero goes stale sooner than others.
+ * Instead of shuffling the targets, the target where the transfer starts rotates with each transfer.
+ *
+ * <p>Each call site that transfers to a list of targets should have its own distributor,
+ * since the demands of the targets are specific to the transfer operation.
+ */
+public final class TransferDistributor<T> {
+    private static final int UNKNOWN = -1;
+
+    private final List<T> targets = new ArrayList<>();
+    /**
+     * Last known demand of each target, or {@link #UNKNOWN}, and the tick at which it was measured.
+     */
+    private int[] demands = new int[0];
+    private long[] demandTicks = new long[0];
+    /**
+     * Amount allocated to each target during the current transfer, or {@link #UNKNOWN} while not allocated yet.
+     */
+    private int[] allocations = new int[0];
+    /**
+     * Whether each target accepted all of its allocation during the current transfer, and might accept more.
+     */
+    private boolean[] saturated = new boolean[0];
+    private int startOffset = 0;
+    private long probes = 0;
+    private long transfers = 0;
+
+    /**
+     * Transfer up to {@code maxAmount} among the targets.
+     * The demands that were measured for the previous targets are kept if the list contains the same targets.
+     *
+     * @return The total amount that was transferred.
+     */
+    public int distribute(List<? extends T> currentTargets, Operation<? super T> operation, int maxAmount) {
+        if (maxAmount <= 0 || currentTargets.isEmpty()) {
+            return 0;
+        }
+        updateTargets(currentTargets);
+
+        int targetCount = targets.size();
+        long currentTick = TickHelper.getTickCounter();
+        startOffset = startOffset >= targetCount - 1 ? 0 : startOffset + 1;
+
+        // Probe the targets whose demand is not known or stale
+        long totalDemand = 0;
+        for (int i = 0; i < targetCount; ++i) {
+            int estimateTicks = demands[i] == 0 ? Constants.Networks.ZERO_DEMAND_ESTIMATE_TICKS : Constants.Networks.DEMAND_ESTIMATE_TICKS;
+            if (demands[i] == UNKNOWN || currentTick - demandTicks[i] >= estimateTicks) {
+                demands[i] = operation.transfer(targets.get(i), maxAmount, true);
+                demandTicks[i] = currentTick;
+                probes++;
+            }
+            totalDemand += Math.min(demands[i], maxAmount);
+        }
+
+        allocate(maxAmount, totalDemand);
+
+        // Actually perform the transfer
+        int transferred = 0;
+        int saturatedCount = 0;
+        for (int k = 0, i = startOffset; k < targetCount; ++k, i = i + 1 == targetCount ? 0 : i + 1) {
+            int allocation = Math.min(allocations[i], maxAmount - transferred);
+            saturated[i] = false;
+            if (allocation <= 0) {
+                continue;
+            }
+
+            int moved = operation.transfer(targets.get(i), allocation, false);
+            transfers++;
+            transferred += moved;
+            allocations[i] = moved;
+
+            if (moved < allocation) {
+                // The target did not want as much as expected
+                demands[i] = moved;
+                demandTicks[i] = currentTick;
+            } else {
+                saturated[i] = true;
+                saturatedCount++;
+            }
+        }
+
+        // Offer what is left to the targets that might want more than expected
+        for (int k = 0, i = startOffset; k < targetCount && saturatedCount > 0
+                && transferred < maxAmount; ++k, i = i + 1 == targetCount ? 0 : i + 1) {
+            if (saturated[i]) {
+                int offer = (maxAmount - transferred) / saturatedCount;
+                saturatedCount--;
+                if (offer <= 0) {
+                    continue;
+                }
+
+                int moved = operation.transfer(targets.get(i), offer, false);
+                transfers++;
+                transferred += moved;
+                demands[i] = allocations[i] + moved;
+                demandTicks[i] = currentTick;
+            }
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Split {@code maxAmount} among the targets according to their demands, into {@link #allocations}.
+     */
+    private void allocate(int maxAmount, long totalDemand) {
+        int targetCount = targets.size();
+
+        if (totalDemand <= maxAmount) {
+            // Everyone gets what they want
+            for (int i = 0; i < targetCount; ++i) {
+                allocations[i] = Math.min(demands[i], maxAmount);
+            }
+            return;
+        }
+
+        // Satisfy the targets that want less than an even share, until the share doesn't change anymore
+        Arrays.fill(allocations, 0, targetCount, UNKNOWN);
+        int remaining = maxAmount;
+        int unsatisfied = targetCount;
+        boolean changed = true;
+        while (changed && unsatisfied > 0) {
+            changed = false;
+            int share = remaining / unsatisfied;
+
+            for (int i = 0; i < targetCount; ++i) {
+                if (allocations[i] == UNKNOWN && demands[i] <= share) {
+                    allocations[i] = demands[i];
+                    remaining -= demands[i];
+                    unsatisfied--;
+                    changed = true;
+                }
+            }
+        }
+
+        // The others want more than the share: split evenly, starting from the rotating offset for the remainder
+        if (unsatisfied > 0) {
+            int share = remaining / unsatisfied;
+            int extra = remaining % unsatisfied;
+            for (int k = 0, i = startOffset; k < targetCount; ++k, i = i + 1 == targetCount ? 0 : i + 1) {
+                if (allocations[i] == UNKNOWN) {
+                    allocations[i] = share;
+                    if (extra > 0) {
+                        allocations[i]++;
+                        extra--;
+                    }
+                }
+            }
+        }
+    }
+
+    private void updateTargets(List<? extends T> currentTargets) {
+        int targetCount = currentTargets.size();
+        boolean same = targetCount == targets.size();
+        for (int i = 0; same && i < targetCount; ++i) {
+            same = currentTargets.get(i) == targets.get(i);
+        }
+
+        if (!same) {
+            targets.clear();
+            targets.addAll(currentTargets);
+            if (demands.length < targetCount) {
+                demands = new int[targetCount];
+                demandTicks = new long[targetCount];
+                allocations = new int[targetCount];
+                saturated = new boolean[targetCount];
+            }
+            Arrays.fill(demands, UNKNOWN);
+        }
+    }
+
+    /**
+     * Forget the demands of the targets, for example because the transferred resource changed.
+     */
+    public void invalidateDemands() {
+        Arrays.fill(demands, UNKNOWN);
+    }
+
+    /**
+     * @return The number of simulated transfers since this distributor was created.
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * @return The number of executed transfers since this distributor was created.
+     */
+    public long getTransfers() {
+        return transfers;
+    }
+
+    @FunctionalInterface
+    public interface Operation<T> {
+        int transfer(T target, int maxAmount, boolean simulate);
+    }
+}
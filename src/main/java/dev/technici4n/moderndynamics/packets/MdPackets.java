@@ -167,6 +167,7 @@ public class MdPackets {
 
     public static void register(PayloadRegistrar registrar) {
         registrar.playToClient(SetAttachmentUpgrades.TYPE, SetAttachmentUpgrades.STREAM_CODEC, SetAttachmentUpgrades.HANDLER);
+        registrar.playToClient(SyncTravelingItems.TYPE, SyncTravelingItems.STREAM_CODEC, SyncTravelingItems.HANDLER);
 
         registrar.playBidirectional(SetItemVariant.TYPE, SetItemVariant.STREAM_CODEC, handler(MdPackets::handleSetItemVariant));
         registrar.playBidirectional(SetFluidVariant.TYPE, SetFluidVariant.STREAM_CODEC, handler(MdPackets::handleSetFluidVariant));
@@ -0,0 +1,107 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.packets;
+
+import dev.technici4n.moderndynamics.network.item.ItemHost;
+import dev.technici4n.moderndynamics.network.item.sync.ClientTravelingItem;
+import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
+import dev.technici4n.moderndynamics.util.MdId;
+import java.util.List;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.world.level.Level;
+import net.neoforged.neoforge.network.handling.IPayloadHandler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Traveling items that spawned in or were removed from pipes, in a single chunk.
+ */
+public record SyncTravelingItems(List<Spawned> spawned, List<Removed> removed) implements CustomPacketPayload {
+    public static final StreamCodec<RegistryFriendlyByteBuf, SyncTravelingItems> STREAM_CODEC = StreamCodec.composite(
+            Spawned.STREAM_CODEC.apply(ByteBufCodecs.list()),
+            SyncTravelingItems::spawned,
+            Removed.STREAM_CODEC.apply(ByteBufCodecs.list()),
+            SyncTravelingItems::removed,
+            SyncTravelingItems::new);
+    public static final Type<SyncTravelingItems> TYPE = new Type<>(MdId.of("sync_traveling_items"));
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    public static final IPayloadHandler<SyncTravelingItems> HANDLER = (payload, context) -> {
+        var level = context.player().level();
+
+        for (var spawned : payload.spawned) {
+            var host = getItemHost(level, spawned.pipePos);
+            if (host != null) {
+                host.addClientTravelingItem(spawned.item);
+            }
+        }
+
+        for (var removed : payload.removed) {
+            var host = getItemHost(level, removed.pipePos);
+            if (host != null && host.removeClientTravelingItem(removed.id)) {
+                continue;
+            }
+            // The client might have moved the item to an adjacent pipe already.
+            for (var direction : Direction.values()) {
+                var adjacentHost = getItemHost(level, removed.pipePos.relative(direction));
+                if (adjacentHost != null && adjacentHost.removeClientTravelingItem(removed.id)) {
+                    break;
+                }
+            }
+        }
+    };
+
+    @Nullable
+    private static ItemHost getItemHost(Level level, BlockPos pos) {
+        if (level.getBlockEntity(pos) instanceof PipeBlockEntity pipe) {
+            for (var host : pipe.getHosts()) {
+                if (host instanceof ItemHost itemHost) {
+                    return itemHost;
+                }
+            }
+        }
+        return null;
+    }
+
+    public record Spawned(BlockPos pipePos, ClientTravelingItem item) {
+        public static final StreamCodec<RegistryFriendlyByteBuf, Spawned> STREAM_CODEC = StreamCodec.composite(
+                BlockPos.STREAM_CODEC,
+                Spawned::pipePos,
+                ClientTravelingItem.STREAM_CODEC,
+                Spawned::item,
+                Spawned::new);
+    }
+
+    public record Removed(BlockPos pipePos, int id) {
+        public static final StreamCodec<RegistryFriendlyByteBuf, Removed> STREAM_CODEC = StreamCodec.composite(
+                BlockPos.STREAM_CODEC,
+                Removed::pipePos,
+                ByteBufCodecs.VAR_INT,
+                Removed::id,
+                Removed::new);
+    }
+}
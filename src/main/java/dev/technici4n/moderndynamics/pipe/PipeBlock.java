@@ -132,6 +132,7 @@ public class PipeBlock extends MdBlock implements EntityBlock, SimpleWaterlogged
     @Override
     public void neighborChanged(BlockState state, Level world, BlockPos pos, Block param4, BlockPos param5, boolean param6) {
         if (world.getBlockEntity(pos) instanceof PipeBlockEntity pipe) {
+            pipe.updateRedstoneSignal();
             pipe.scheduleHostUpdates();
         }
     }
@@ -70,6 +70,11 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
     private boolean hostsRegistered = false;
     public int connectionBlacklist = 0;
     private VoxelShape cachedShape = PipeBoundingBoxes.CORE_SHAPE;
+    /**
+     * Whether the pipe receives a redstone signal. Lazily computed on the server, and updated when a neighbor changes.
+     */
+    private boolean redstoneSignal = false;
+    private boolean redstoneSignalKnown = false;
     /* client side stuff */
     private ModelData clientModelData = ModelData.EMPTY;
 
@@ -147,6 +152,10 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
         tag.putByte("connections", (byte) getPipeConnections());
         tag.putByte("inventoryConnections", (byte) getInventoryConnections());
         for (var host : getHosts()) {
+            if (hostsRegistered) {
+                // Combined networks only update the contents of their hosts from time to time.
+                host.updateNetworkShare();
+            }
             host.writeClientNbt(tag, registries);
         }
         var attachments = new ListTag();
@@ -205,7 +214,7 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
         if (!level.isClientSide()) { // WTHIT calls this on the client side
             for (NodeHost host : getHosts()) {
                 if (hostsRegistered) {
-                    host.separateNetwork();
+                    host.updateNetworkShare();
                 }
 
                 host.writeNbt(nbt, registries);
@@ -232,6 +241,27 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
         }
     }
 
+    /**
+     * Return whether this pipe receives a redstone signal from any side.
+     */
+    public boolean hasRedstoneSignal() {
+        if (isClientSide()) {
+            return level.hasNeighborSignal(worldPosition);
+        }
+        if (!redstoneSignalKnown) {
+            updateRedstoneSignal();
+        }
+        return redstoneSignal;
+    }
+
+    /**
+     * Called by the block when a neighbor changed, which might have changed the redstone signal.
+     */
+    public void updateRedstoneSignal() {
+        redstoneSignal = level.hasNeighborSignal(worldPosition);
+        redstoneSignalKnown = true;
+    }
+
     @Override
     public void clearRemoved() {
         super.clearRemoved();
@@ -0,0 +1,94 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.test;
+
+import dev.technici4n.moderndynamics.attachment.attached.ItemCachedFilter;
+import dev.technici4n.moderndynamics.attachment.settings.FilterDamageMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterInversionMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterModMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterNbtMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterSimilarMode;
+import dev.technici4n.moderndynamics.test.framework.MdGameTestHelper;
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import dev.technici4n.moderndynamics.util.MdId;
+import java.util.List;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+
+@GameTestHolder(MdId.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class ItemFilterTest {
+    @MdGameTest
+    public void testRespectDamageIgnoreNbt(MdGameTestHelper helper) {
+        var filter = makeFilter(pickaxe(10, false), FilterDamageMode.RESPECT_DAMAGE, FilterNbtMode.IGNORE_NBT);
+
+        checkMatches(helper, filter, pickaxe(10, false), true);
+        checkMatches(helper, filter, pickaxe(10, true), true);
+        checkMatches(helper, filter, pickaxe(0, false), false);
+        checkMatches(helper, filter, pickaxe(20, true), false);
+        helper.succeed();
+    }
+
+    @MdGameTest
+    public void testIgnoreDamageRespectNbt(MdGameTestHelper helper) {
+        var filter = makeFilter(pickaxe(0, false), FilterDamageMode.IGNORE_DAMAGE, FilterNbtMode.RESPECT_NBT);
+
+        checkMatches(helper, filter, pickaxe(0, false), true);
+        checkMatches(helper, filter, pickaxe(20, false), true);
+        checkMatches(helper, filter, pickaxe(20, true), false);
+        helper.succeed();
+    }
+
+    @MdGameTest
+    public void testRepeatedComponentChecks(MdGameTestHelper helper) {
+        var filter = makeFilter(pickaxe(10, false), FilterDamageMode.RESPECT_DAMAGE, FilterNbtMode.RESPECT_NBT);
+
+        // Every check uses a new instance of an equal variant, the decision must stay the same
+        for (int i = 0; i < 1000; ++i) {
+            checkMatches(helper, filter, pickaxe(10, false), true);
+            checkMatches(helper, filter, pickaxe(i % 50, true), false);
+        }
+        checkMatches(helper, filter, ItemVariant.of(Items.DIAMOND), false);
+        helper.succeed();
+    }
+
+    private static ItemCachedFilter makeFilter(ItemVariant listed, FilterDamageMode damageMode, FilterNbtMode nbtMode) {
+        return new ItemCachedFilter(List.of(listed), FilterInversionMode.WHITELIST, damageMode, nbtMode, FilterModMode.IGNORE_MOD,
+                FilterSimilarMode.IGNORE_SIMILAR);
+    }
+
+    private static ItemVariant pickaxe(int damage, boolean named) {
+        var stack = new ItemStack(Items.DIAMOND_PICKAXE);
+        stack.setDamageValue(damage);
+        if (named) {
+            stack.set(DataComponents.CUSTOM_NAME, Component.literal("Named pickaxe"));
+        }
+        return ItemVariant.of(stack);
+    }
+
+    private static void checkMatches(MdGameTestHelper helper, ItemCachedFilter filter, ItemVariant variant, boolean expected) {
+        if (filter.matchesItem(variant) != expected) {
+            helper.fail("Expected " + variant.toStack() + (expected ? " to match" : " not to match") + " the filter");
+        }
+    }
+}
@@ -18,8 +18,12 @@
  */
 package dev.technici4n.moderndynamics.test;
 
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
 import dev.technici4n.moderndynamics.init.MdBlocks;
 import dev.technici4n.moderndynamics.init.MdItems;
+import dev.technici4n.moderndynamics.network.item.SimulatedInsertionTarget;
+import dev.technici4n.moderndynamics.network.item.SimulatedInsertionTargets;
 import dev.technici4n.moderndynamics.test.framework.MdGameTestHelper;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -27,6 +31,7 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.ChestBlockEntity;
+import net.minecraft.world.level.block.entity.FurnaceBlockEntity;
 import net.minecraft.world.level.block.entity.HopperBlockEntity;
 
 public class ItemTransferTest {
@@ -91,4 +96,197 @@ public class ItemTransferTest {
                 })
                 .thenSucceed();
     }
+
+    /**
+     * Traveling items are only processed when they reach the next pipe.
+     * Check that they still arrive on time, even if the network changes while they travel.
+     */
+    @MdGameTest(timeoutTicks = 200)
+    public void testTravelingItemArrivesOnTime(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR);
+        helper.pipe(new BlockPos(2, 1, 0), MdBlocks.ITEM_PIPE);
+        var targetChest = new BlockPos(3, 1, 0);
+        helper.setBlock(targetChest, Blocks.CHEST);
+
+        ((ChestBlockEntity) helper.getBlockEntity(sourceChest)).setItem(0, new ItemStack(Items.DIAMOND));
+
+        // The item moves through two pipes before it reaches the target chest.
+        int travelTicks = (int) Math.ceil(2 / Constants.Items.SPEED_IN_PIPES);
+
+        helper.startSequence()
+                .thenIdle(travelTicks / 2)
+                .thenExecute(() -> {
+                    helper.assertContainerEmpty(sourceChest);
+                    helper.assertContainerEmpty(targetChest);
+                    // A pipe joining the network must not delay the item.
+                    helper.pipe(new BlockPos(2, 1, 1), MdBlocks.ITEM_PIPE);
+                })
+                .thenIdle(travelTicks / 2 - 10)
+                .thenExecute(() -> helper.assertContainerEmpty(targetChest))
+                .thenIdle(20)
+                .thenExecute(() -> helper.checkItem(targetChest, Items.DIAMOND, 1))
+                .thenSucceed();
+    }
+
+    /**
+     * Two extractors pull from the same chest during the same tick, sharing one summary of its contents.
+     */
+    @MdGameTest(timeoutTicks = 200)
+    public void testExtractorsSharingSource(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        var chest = (ChestBlockEntity) helper.getBlockEntity(sourceChest);
+
+        // Two separate networks, each with its own target chest.
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .configureItemIo(Direction.WEST, io -> io.setMaxItemsExtracted(2));
+        var targetChest1 = new BlockPos(2, 1, 0);
+        helper.setBlock(targetChest1, Blocks.CHEST);
+        helper.pipe(new BlockPos(0, 1, 1), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.NORTH, MdItems.EXTRACTOR)
+                .configureItemIo(Direction.NORTH, io -> io.setMaxItemsExtracted(2));
+        var targetChest2 = new BlockPos(0, 1, 2);
+        helper.setBlock(targetChest2, Blocks.CHEST);
+
+        chest.setItem(0, new ItemStack(Items.DIAMOND, 4));
+        chest.setItem(1, new ItemStack(Items.GOLD_INGOT, 4));
+
+        helper.startSequence()
+                .thenIdle(1)
+                .thenExecute(() -> {
+                    // Each extractor took 2 diamonds from the first slot.
+                    if (!chest.getItem(0).isEmpty()) {
+                        helper.fail("Expected the diamonds to be extracted", sourceChest);
+                    }
+                    if (!ItemStack.matches(new ItemStack(Items.GOLD_INGOT, 4), chest.getItem(1))) {
+                        helper.fail("Expected 4 gold ingots in slot 1", sourceChest);
+                    }
+                })
+                .thenWaitUntil(() -> {
+                    helper.checkItem(targetChest1, Items.DIAMOND, 2);
+                    helper.checkItem(targetChest2, Items.DIAMOND, 2);
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * A furnace behind a filter that allows 1 item in its input slot must keep receiving items as it smelts them.
+     */
+    @MdGameTest(timeoutTicks = 800)
+    public void testMaxItemsInFurnace(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 2, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        var chest = (ChestBlockEntity) helper.getBlockEntity(sourceChest);
+
+        var furnacePos = new BlockPos(1, 1, 0);
+        helper.setBlock(furnacePos, Blocks.FURNACE);
+        var furnace = (FurnaceBlockEntity) helper.getBlockEntity(furnacePos);
+
+        helper.pipe(new BlockPos(1, 2, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .attachment(Direction.DOWN, MdItems.FILTER)
+                .configureItemIo(Direction.DOWN, io -> io.setMaxItemsInInventory(1));
+
+        chest.setItem(0, new ItemStack(Items.RAW_IRON, 8));
+        furnace.setItem(1, new ItemStack(Items.COAL));
+
+        Runnable checkOneItemInFurnace = () -> {
+            if (!ItemStack.matches(new ItemStack(Items.RAW_IRON), furnace.getItem(0))) {
+                helper.fail("Expected 1 raw iron in the furnace", furnacePos);
+            }
+        };
+
+        helper.startSequence()
+                .thenIdle(100)
+                .thenExecute(checkOneItemInFurnace)
+                .thenIdle(100)
+                .thenExecute(checkOneItemInFurnace)
+                .thenWaitUntil(() -> {
+                    if (furnace.getItem(2).getCount() < 2) {
+                        helper.fail("Expected the furnace to smelt 2 raw iron", furnacePos);
+                    }
+                })
+                .thenSucceed();
+    }
+
+    @MdGameTest(timeoutTicks = 200)
+    public void testMaxItemsInInventoryCountsTravelingItems(MdGameTestHelper helper) {
+        var targetChest = setUpMaxItemsInInventory(helper, OversendingMode.PREVENT_OVERSENDING);
+
+        // The second operation happens while the first items are still traveling, it must not send more items.
+        helper.startSequence()
+                .thenIdle(150)
+                .thenExecute(() -> {
+                    var chest = (ChestBlockEntity) helper.getBlockEntity(targetChest);
+                    if (!ItemStack.matches(new ItemStack(Items.DIAMOND, 2), chest.getItem(0))) {
+                        helper.fail("Expected exactly 2 diamonds in the target chest", targetChest);
+                    }
+                })
+                .thenSucceed();
+    }
+
+    @MdGameTest(timeoutTicks = 200)
+    public void testOversending(MdGameTestHelper helper) {
+        var targetChest = setUpMaxItemsInInventory(helper, OversendingMode.ALLOW_OVERSENDING);
+
+        // The second operation happens while the first items are still traveling, and sends 2 more items.
+        helper.startSequence()
+                .thenIdle(150)
+                .thenExecute(() -> {
+                    var chest = (ChestBlockEntity) helper.getBlockEntity(targetChest);
+                    if (!ItemStack.matches(new ItemStack(Items.DIAMOND, 4), chest.getItem(0))) {
+                        helper.fail("Expected exactly 4 diamonds in the target chest", targetChest);
+                    }
+                })
+                .thenSucceed();
+    }
+
+    @MdGameTest(timeoutTicks = 150 + 3 * Constants.Items.INSERTION_TARGET_IDLE_TICKS)
+    public void testInsertionTargetEvictedAfterOversending(MdGameTestHelper helper) {
+        var targetChest = setUpMaxItemsInInventory(helper, OversendingMode.ALLOW_OVERSENDING);
+        // Only send one batch of items, such that the target is not used anymore once they arrived.
+        ((ChestBlockEntity) helper.getBlockEntity(new BlockPos(0, 1, 0))).setItem(0, new ItemStack(Items.DIAMOND, 2));
+
+        var target = new SimulatedInsertionTarget[1];
+        helper.startSequence()
+                .thenWaitUntil(() -> helper.checkItem(targetChest, Items.DIAMOND, 2))
+                .thenExecute(() -> {
+                    target[0] = SimulatedInsertionTargets.getTarget(helper.getLevel(), helper.absolutePos(targetChest), Direction.WEST);
+                })
+                .thenWaitUntil(() -> {
+                    if (!target[0].isEvicted()) {
+                        helper.fail("Expected the idle insertion target to be evicted", targetChest);
+                    }
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Set up an extractor that sends diamonds to a chest behind a filter that allows 2 items in the chest.
+     *
+     * @return The position of the target chest.
+     */
+    private static BlockPos setUpMaxItemsInInventory(MdGameTestHelper helper, OversendingMode oversendingMode) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        var targetChest = new BlockPos(2, 1, 0);
+        helper.setBlock(targetChest, Blocks.CHEST);
+
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .attachment(Direction.EAST, MdItems.FILTER)
+                .configureItemIo(Direction.EAST, io -> {
+                    // Oversending is an advanced setting.
+                    io.setUpgrade(0, Items.COMPARATOR.getDefaultInstance());
+                    io.setOversendingMode(oversendingMode);
+                    io.setMaxItemsInInventory(2);
+                });
+
+        ((ChestBlockEntity) helper.getBlockEntity(sourceChest)).setItem(0, new ItemStack(Items.DIAMOND, 16));
+        return targetChest;
+    }
 }
@@ -32,7 +32,9 @@ public class MdGameTests {
     private final List<Class<?>> testClasses = List.of(
             FluidTransferTest.class,
             ItemDistributionTest.class,
-            ItemTransferTest.class);
+            ItemFilterTest.class,
+            ItemTransferTest.class,
+            TransferDistributorTest.class);
 
     @GameTestGenerator
     public List<TestFunction> generateTests() {
@@ -0,0 +1,155 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.test;
+
+import dev.technici4n.moderndynamics.Constants;
+import dev.technici4n.moderndynamics.network.shared.TransferDistributor;
+import dev.technici4n.moderndynamics.test.framework.MdGameTestHelper;
+import dev.technici4n.moderndynamics.util.MdId;
+import java.util.List;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+
+@GameTestHolder(MdId.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class TransferDistributorTest {
+    @MdGameTest
+    public void testWaterFilling(MdGameTestHelper helper) {
+        var small = new Target(10);
+        var medium = new Target(50);
+        var large1 = new Target(1000);
+        var large2 = new Target(1000);
+        var targets = List.of(small, medium, large1, large2);
+
+        int transferred = new TransferDistributor<Target>().distribute(targets, Target::receive, 1000);
+
+        // The small targets get what they want, the large targets split the rest evenly
+        checkReceived(helper, small, 10);
+        checkReceived(helper, medium, 50);
+        checkReceived(helper, large1, 470);
+        checkReceived(helper, large2, 470);
+        checkConserved(helper, targets, transferred, 1000);
+        helper.succeed();
+    }
+
+    @MdGameTest
+    public void testEvenSplitRemainder(MdGameTestHelper helper) {
+        var targets = List.of(new Target(1000), new Target(1000), new Target(1000));
+        var distributor = new TransferDistributor<Target>();
+
+        // 100 doesn't split evenly: the extra unit must rotate among the targets
+        for (int i = 0; i < 3; ++i) {
+            int before = targets.stream().mapToInt(t -> t.received).sum();
+            int transferred = distributor.distribute(targets, Target::receive, 100);
+            if (transferred != 100) {
+                helper.fail("Expected 100 to be transferred, got " + transferred);
+            }
+            checkConserved(helper, targets, before + transferred, 300);
+        }
+        for (var target : targets) {
+            checkReceived(helper, target, 100);
+        }
+        helper.succeed();
+    }
+
+    @MdGameTest
+    public void testLeftoverOffer(MdGameTestHelper helper) {
+        var first = new Target(10);
+        var second = new Target(10);
+        var targets = List.of(first, second);
+        var distributor = new TransferDistributor<Target>();
+
+        int transferred = distributor.distribute(targets, Target::receive, 1000);
+        checkConserved(helper, targets, transferred, 1000);
+
+        // The targets now want more than their remembered demand of 10, which is still trusted during this tick
+        first.space = 400;
+        second.space = 400;
+        transferred += distributor.distribute(targets, Target::receive, 1000);
+
+        checkReceived(helper, first, 410);
+        checkReceived(helper, second, 410);
+        checkConserved(helper, targets, transferred, 2000);
+        helper.succeed();
+    }
+
+    @MdGameTest(timeoutTicks = 20 + Constants.Networks.ZERO_DEMAND_ESTIMATE_TICKS)
+    public void testZeroDemandIsCheckedAgain(MdGameTestHelper helper) {
+        var full = new Target(0);
+        var other = new Target(1000);
+        var targets = List.of(full, other);
+        var distributor = new TransferDistributor<Target>();
+
+        helper.startSequence()
+                .thenExecute(() -> {
+                    distributor.distribute(targets, Target::receive, 100);
+                    long probes = distributor.getProbes();
+                    full.space = 50;
+                    distributor.distribute(targets, Target::receive, 100);
+                    if (distributor.getProbes() != probes) {
+                        helper.fail("Expected the zero demand to be trusted during the same tick");
+                    }
+                    checkReceived(helper, full, 0);
+                })
+                .thenIdle(Constants.Networks.ZERO_DEMAND_ESTIMATE_TICKS)
+                .thenExecute(() -> {
+                    distributor.distribute(targets, Target::receive, 100);
+                    checkReceived(helper, full, 50);
+                    checkConserved(helper, targets, 300, 300);
+                })
+                .thenSucceed();
+    }
+
+    private static void checkReceived(MdGameTestHelper helper, Target target, int expected) {
+        if (target.received != expected) {
+            helper.fail("Expected target to receive " + expected + ", got " + target.received);
+        }
+    }
+
+    /**
+     * Check that the targets received exactly what the distributor reported, and never more than offered.
+     */
+    private static void checkConserved(MdGameTestHelper helper, List<Target> targets, int transferred, int maxAmount) {
+        int received = targets.stream().mapToInt(t -> t.received).sum();
+        if (received != transferred) {
+            helper.fail("Targets received " + received + ", but the distributor reported " + transferred);
+        }
+        if (received > maxAmount) {
+            helper.fail("Targets received " + received + ", more than the maximum of " + maxAmount);
+        }
+    }
+
+    private static class Target {
+        int space;
+        int received;
+
+        Target(int space) {
+            this.space = space;
+        }
+
+        int receive(int maxAmount, boolean simulate) {
+            int amount = Math.min(maxAmount, space);
+            if (!simulate) {
+                space -= amount;
+                received += amount;
+            }
+            return amount;
+        }
+    }
+}
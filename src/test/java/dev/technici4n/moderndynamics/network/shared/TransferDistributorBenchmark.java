@@ -0,0 +1,120 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.shared;
+
+import dev.technici4n.moderndynamics.network.TickHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link TransferDistributor} with the previous "shuffle, simulate, sort and execute" distribution,
+ * on a network that feeds many machines with different consumption rates. Run the main method directly.
+ */
+public class TransferDistributorBenchmark {
+    private static final int MACHINES = 500;
+    private static final int TICKS = 20_000;
+    private static final int SUPPLY_PER_TICK = 100_000;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 3; ++round) {
+            run("shuffle-simulate-sort", TransferDistributorBenchmark::shuffleSimulateSort);
+            var distributor = new TransferDistributor<Machine>();
+            run("transfer distributor", (machines, maxAmount) -> distributor.distribute(machines, Machine::receive, maxAmount));
+        }
+    }
+
+    private static void run(String name, Strategy strategy) {
+        var random = new Random(42);
+        List<Machine> machines = new ArrayList<>();
+        for (int i = 0; i < MACHINES; ++i) {
+            // A third of the machines is full and idle, the others consume at different rates
+            int consumption = i % 3 == 0 ? 0 : 50 + random.nextInt(500);
+            machines.add(new Machine(10_000, consumption));
+        }
+
+        long transferred = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < TICKS; ++tick) {
+            for (var machine : machines) {
+                machine.consume();
+            }
+            transferred += strategy.distribute(machines, SUPPLY_PER_TICK);
+            TickHelper.onEndTick();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long calls = 0;
+        for (var machine : machines) {
+            calls += machine.calls;
+        }
+        System.out.printf("%-24s %8.2f us/tick, %6.2f calls/machine/tick, %d transferred%n",
+                name, elapsed / 1000.0 / TICKS, (double) calls / MACHINES / TICKS, transferred);
+    }
+
+    private static int shuffleSimulateSort(List<Machine> machines, int maxAmount) {
+        List<Machine> sorted = new ArrayList<>(machines);
+        Collections.shuffle(sorted);
+        for (int i = 0; i < sorted.size(); ++i) {
+            var machine = sorted.get(i);
+            machine.simulated = machine.receive(maxAmount, true);
+        }
+        sorted.sort(Comparator.comparingInt(m -> m.simulated));
+        int transferred = 0;
+        for (int i = 0; i < sorted.size(); ++i) {
+            int remainingTargets = sorted.size() - i;
+            transferred += sorted.get(i).receive((maxAmount - transferred) / remainingTargets, false);
+        }
+        return transferred;
+    }
+
+    @FunctionalInterface
+    private interface Strategy {
+        int distribute(List<Machine> machines, int maxAmount);
+    }
+
+    private static class Machine {
+        final int capacity;
+        final int consumption;
+        int stored;
+        int simulated;
+        long calls;
+
+        Machine(int capacity, int consumption) {
+            this.capacity = capacity;
+            this.consumption = consumption;
+            this.stored = capacity;
+        }
+
+        void consume() {
+            stored = Math.max(0, stored - consumption);
+        }
+
+        int receive(int maxAmount, boolean simulate) {
+            calls++;
+            int received = Math.min(maxAmount, capacity - stored);
+            if (!simulate) {
+                stored += received;
+            }
+            return received;
+        }
+    }
+}